@@ -0,0 +1,30 @@
+#!/bin/bash
+
+# Benchmarks de regressão (sem banco de dados): roda a suíte e compara com o
+# baseline versionado em src/jmh/baseline.json. Termina com erro se algum
+# benchmark piorou mais que o limite (throughput ou bytes alocados por operação)
+# e o intervalo de confiança não se sobrepõe ao do baseline. Cada benchmark roda
+# em FORKS JVMs (padrão: 3), para que o erro gravado inclua a variação entre elas.
+#
+# Uso: scripts/benchmark-regressao.sh [limite-%]    (padrão: 10)
+#      scripts/benchmark-regressao.sh --atualizar   (grava o resultado como novo baseline)
+
+set -e
+cd "$(dirname "$0")/.."
+
+BASELINE=src/jmh/baseline.json
+RESULTADO=target/jmh-resultado.json
+FORKS=${FORKS:-3}
+SUITE='CndPdfBenchmark QrCodeBenchmark HashDocumentoBenchmark CndAssinaturaBenchmark.padesContextoEmCache GeradorCodigoBenchmark.gerador$'
+
+mvn -B -q -Pbenchmark package -DskipTests exec:exec \
+    -Djmh.args="-f $FORKS -wi 3 -w 2 -i 5 -r 2 -prof gc -rf json -rff $RESULTADO $SUITE"
+
+if [ "$1" = "--atualizar" ]; then
+    cp "$RESULTADO" "$BASELINE"
+    echo "Baseline atualizado: $BASELINE"
+    exit 0
+fi
+
+mvn -B -q -Pbenchmark exec:exec -Djmh.main=br.com.llz.cnd.benchmark.ComparadorBaseline \
+    -Djmh.args="$BASELINE $RESULTADO ${1:-10}"
@@ -41,39 +41,101 @@ CREATE TABLE IF NOT EXISTS unidade_cnd (
     hash_parametros VARCHAR(64) NOT NULL,
     status VARCHAR(20) DEFAULT 'PROCESSANDO',
     canal_emissao VARCHAR(20) NOT NULL,
-    documento_pdf BYTEA,
-    documento_assinado BYTEA,
+    hash_documento_pdf VARCHAR(64),
+    tamanho_documento_pdf BIGINT,
+    hash_documento_assinado VARCHAR(64),
+    tamanho_documento_assinado BIGINT,
+    dt_arquivamento TIMESTAMP,
     codigo_plataforma VARCHAR(100),
     dados_assinatura JSONB,
     dt_criacao TIMESTAMP DEFAULT NOW(),
     dt_assinatura TIMESTAMP,
     dt_expiracao TIMESTAMP,
     tentativas_emissao INTEGER DEFAULT 1,
+    tentativas_assinatura INTEGER NOT NULL DEFAULT 0,
+    reservado_por VARCHAR(100),
+    reservado_ate TIMESTAMP,
     ip_origem VARCHAR(45),
     reg_ativo BOOLEAN DEFAULT TRUE,
     dt_alteracao TIMESTAMP DEFAULT NOW(),
     usr_criacao BIGINT,
     usr_alteracao BIGINT,
     
-    CONSTRAINT fk_unidade_cnd_unidade FOREIGN KEY (unidade_id) REFERENCES unidade(id),
-    CONSTRAINT uk_unidade_hash UNIQUE (unidade_id, hash_parametros)
+    CONSTRAINT fk_unidade_cnd_unidade FOREIGN KEY (unidade_id) REFERENCES unidade(id)
 );
 
+-- Bancos criados por versões anteriores deste script: o CREATE TABLE acima não altera
+-- uma tabela existente, e com ddl-auto=validate a aplicação não sobe sem estas colunas.
+-- As antigas colunas BYTEA (documento_pdf, documento_assinado) ficam para a migração
+-- automática dos documentos (cnd.documentos.migrar-legado)
+ALTER TABLE unidade_cnd
+    ADD COLUMN IF NOT EXISTS hash_documento_pdf VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS tamanho_documento_pdf BIGINT,
+    ADD COLUMN IF NOT EXISTS hash_documento_assinado VARCHAR(64),
+    ADD COLUMN IF NOT EXISTS tamanho_documento_assinado BIGINT,
+    ADD COLUMN IF NOT EXISTS dt_arquivamento TIMESTAMP,
+    ADD COLUMN IF NOT EXISTS tentativas_assinatura INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS reservado_por VARCHAR(100),
+    ADD COLUMN IF NOT EXISTS reservado_ate TIMESTAMP;
+
+-- Uma CND ativa por unidade e parâmetros; vencidas e com erro são desativadas e
+-- não bloqueiam nova emissão (bancos anteriores tinham a restrição em todas as linhas)
+ALTER TABLE unidade_cnd DROP CONSTRAINT IF EXISTS uk_unidade_hash;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_unidade_hash_ativo ON unidade_cnd(unidade_id, hash_parametros) WHERE reg_ativo;
+
+-- Situação de adimplência materializada por unidade (AdimplenciaService): mantida por
+-- eventos de pagamento e cobrança e por reconstrução agendada; a emissão não apura débitos
+CREATE TABLE IF NOT EXISTS unidade_adimplencia (
+    unidade_id BIGINT PRIMARY KEY,
+    adimplente BOOLEAN NOT NULL,
+    dt_atualizacao TIMESTAMP NOT NULL DEFAULT NOW()
+);
+-- Releitura incremental das alterações em cada nó
+CREATE INDEX IF NOT EXISTS idx_unidade_adimplencia_atualizacao ON unidade_adimplencia(dt_atualizacao);
+
+-- Conteúdo dos PDFs quando cnd.documentos.store=jdbc (chave: SHA-256 do conteúdo)
+CREATE TABLE IF NOT EXISTS documento_cnd (
+    hash VARCHAR(64) PRIMARY KEY,
+    tamanho BIGINT NOT NULL,
+    conteudo BYTEA NOT NULL,
+    dt_criacao TIMESTAMP DEFAULT NOW()
+);
+-- PDFs já são comprimidos: sem compressão TOAST, substring lê só os blocos do trecho pedido
+ALTER TABLE documento_cnd ALTER COLUMN conteudo SET STORAGE EXTERNAL;
+
 -- Índices para performance
 CREATE INDEX IF NOT EXISTS idx_unidade_cnd_codigo ON unidade_cnd(codigo_validacao);
 CREATE INDEX IF NOT EXISTS idx_unidade_cnd_status ON unidade_cnd(status);
 CREATE INDEX IF NOT EXISTS idx_unidade_cnd_data ON unidade_cnd(dt_criacao);
+-- Fila de assinatura: só as CNDs pendentes entram no índice
+CREATE INDEX IF NOT EXISTS idx_unidade_cnd_fila ON unidade_cnd(id) WHERE status = 'PROCESSANDO';
+-- Ciclo de vida (CicloVidaCndService): cada etapa percorre só as linhas que ainda tem a fazer
+CREATE INDEX IF NOT EXISTS idx_unidade_cnd_vigentes ON unidade_cnd(id) WHERE status IN ('ASSINADO', 'PROCESSANDO');
+CREATE INDEX IF NOT EXISTS idx_unidade_cnd_original ON unidade_cnd(id)
+    WHERE hash_documento_pdf IS NOT NULL AND hash_documento_assinado IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_unidade_cnd_arquivavel ON unidade_cnd(id)
+    WHERE NOT reg_ativo AND hash_documento_assinado IS NOT NULL AND dt_arquivamento IS NULL;
+
+-- As gravações usam o DEFAULT da coluna (INSERT do JdbcTemplate), um id por linha. Uma
+-- versão anterior deste script passava as sequências para INCREMENT BY 50, o que gastava
+-- 50 ids por CND e espalhava os ids das unidades no índice de adimplência: volta para 1
+ALTER SEQUENCE unidade_cnd_id_seq INCREMENT BY 1;
+ALTER SEQUENCE unidade_id_seq INCREMENT BY 1;
+ALTER SEQUENCE condominio_id_seq INCREMENT BY 1;
+ALTER SEQUENCE endereco_id_seq INCREMENT BY 1;
 
 -- Dados de teste
 INSERT INTO endereco (id, logradouro, numero, bairro, cidade, uf, cep) VALUES
 (1, 'Rua das Flores', '123', 'Centro', 'Belo Horizonte', 'MG', '30112-000'),
 (2, 'Avenida Brasil', '456', 'Savassi', 'Belo Horizonte', 'MG', '30140-000'),
-(3, 'Rua da Paz', '789', 'Funcionários', 'Belo Horizonte', 'MG', '30130-000');
+(3, 'Rua da Paz', '789', 'Funcionários', 'Belo Horizonte', 'MG', '30130-000')
+ON CONFLICT (id) DO NOTHING;
 
 INSERT INTO condominio (id, razao_social, endereco_id) VALUES
 (1, 'Condomínio Residencial Jardim das Flores', 1),
 (2, 'Edifício Comercial Brasil Tower', 2),
-(3, 'Condomínio Residencial Paz e Amor', 3);
+(3, 'Condomínio Residencial Paz e Amor', 3)
+ON CONFLICT (id) DO NOTHING;
 
 INSERT INTO unidade (id, codigo, bloco, condominio_id) VALUES
 (1, '101', 'A', 1),
@@ -83,9 +145,10 @@ INSERT INTO unidade (id, codigo, bloco, condominio_id) VALUES
 (5, '401', 'B', 2),
 (6, '101', 'C', 3),
 (7, '102', 'C', 3),
-(8, '201', 'D', 3);
+(8, '201', 'D', 3)
+ON CONFLICT (id) DO NOTHING;
 
--- Resetar sequences
-SELECT setval('endereco_id_seq', 3, true);
-SELECT setval('condominio_id_seq', 3, true);
-SELECT setval('unidade_id_seq', 8, true);
\ No newline at end of file
+-- Resetar sequences (sem voltar atrás quando o script roda de novo em um banco com dados)
+SELECT setval('endereco_id_seq', GREATEST((SELECT max(id) FROM endereco), 3), true);
+SELECT setval('condominio_id_seq', GREATEST((SELECT max(id) FROM condominio), 3), true);
+SELECT setval('unidade_id_seq', GREATEST((SELECT max(id) FROM unidade), 8), true);
\ No newline at end of file
@@ -0,0 +1,70 @@
+package br.com.llz.cnd.carga;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+/**
+ * Certificado autoassinado para a assinatura PAdES durante o teste de carga.
+ * O {@code CertificadoConfig} lê o PKCS12 do classpath, então o profile
+ * {@code carga} grava o arquivo em {@code target/carga/classpath} antes de
+ * subir a JVM do {@link TesteCarga}, que inclui esse diretório no classpath.
+ * <p>
+ * Uso: {@code CertificadoTeste <arquivo.p12>}
+ */
+public final class CertificadoTeste {
+    
+    static final String ALIAS = "llz-test";
+    static final String SENHA = "123456";
+    
+    private CertificadoTeste() {
+    }
+    
+    public static void main(String[] args) throws IOException, GeneralSecurityException {
+        if (args.length < 1) {
+            System.err.println("Uso: CertificadoTeste <arquivo.p12>");
+            System.exit(2);
+        }
+        gerar(Path.of(args[0]));
+    }
+    
+    static void gerar(Path arquivo) throws IOException, GeneralSecurityException {
+        try {
+            KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+            gerador.initialize(2048);
+            KeyPair chaves = gerador.generateKeyPair();
+            
+            X500Name titular = new X500Name("CN=LLZ Garantidora,OU=Carga,O=LLZ");
+            long agora = System.currentTimeMillis();
+            X509Certificate certificado = new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(titular, BigInteger.valueOf(agora), new Date(agora - 60_000),
+                    new Date(agora + 86_400_000L), titular, chaves.getPublic())
+                    .build(new JcaContentSignerBuilder("SHA256withRSA").build(chaves.getPrivate())));
+            
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(null, null);
+            keyStore.setKeyEntry(ALIAS, chaves.getPrivate(), SENHA.toCharArray(), new Certificate[]{certificado});
+            
+            Files.createDirectories(arquivo.getParent());
+            try (OutputStream saida = Files.newOutputStream(arquivo)) {
+                keyStore.store(saida, SENHA.toCharArray());
+            }
+        } catch (org.bouncycastle.operator.OperatorCreationException e) {
+            throw new GeneralSecurityException("Erro ao gerar o certificado de teste", e);
+        }
+    }
+}
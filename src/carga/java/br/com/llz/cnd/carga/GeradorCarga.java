@@ -0,0 +1,225 @@
+package br.com.llz.cnd.carga;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gerador de carga em modelo aberto: as chegadas seguem um processo de Poisson
+ * na taxa configurada, independentemente de quanto o servidor demora a
+ * responder. A latência é medida a partir do instante em que a requisição
+ * deveria ter saído, e não de quando saiu, para que a fila formada por um
+ * servidor lento apareça nos percentis (coordinated omission).
+ */
+final class GeradorCarga {
+    
+    /** Acima disso as chegadas são descartadas e contadas como erro, para não esgotar a memória do gerador. */
+    private static final int MAX_EM_ANDAMENTO = 5_000;
+    
+    private static final long MAIOR_LATENCIA_US = TimeUnit.MINUTES.toMicros(5);
+    
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    
+    /** Códigos emitidos durante o teste, reutilizados por validar, download e hash. */
+    private static final int CODIGOS_GUARDADOS = 10_000;
+    
+    private final HttpClient cliente = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final String baseUrl;
+    
+    private final Operacao[] operacoes;
+    
+    private final int[] pesosAcumulados;
+    
+    private final List<Long> unidadeIds;
+    
+    private final AtomicReferenceArray<CndEmitida> codigos = new AtomicReferenceArray<>(CODIGOS_GUARDADOS);
+    
+    private final AtomicLong totalCodigos = new AtomicLong();
+    
+    GeradorCarga(String baseUrl, Map<Operacao, Integer> mix, List<Long> unidadeIds) {
+        this.baseUrl = baseUrl;
+        this.unidadeIds = unidadeIds;
+        this.operacoes = mix.keySet().toArray(Operacao[]::new);
+        this.pesosAcumulados = new int[operacoes.length];
+        int acumulado = 0;
+        for (int i = 0; i < operacoes.length; i++) {
+            acumulado += mix.get(operacoes[i]);
+            pesosAcumulados[i] = acumulado;
+        }
+    }
+    
+    /**
+     * Executa uma etapa na taxa informada (requisições por segundo) e aguarda
+     * as respostas pendentes antes de devolver as medições.
+     */
+    ResultadoEtapa executar(double taxa, Duration duracao) throws InterruptedException {
+        Map<Operacao, Recorder> latencias = new EnumMap<>(Operacao.class);
+        Map<Operacao, LongAdder> erros = new EnumMap<>(Operacao.class);
+        for (Operacao operacao : Operacao.values()) {
+            latencias.put(operacao, new Recorder(MAIOR_LATENCIA_US, 3));
+            erros.put(operacao, new LongAdder());
+        }
+        AtomicInteger emAndamento = new AtomicInteger();
+        LongAdder descartadas = new LongAdder();
+        
+        double intervaloMedioNs = TimeUnit.SECONDS.toNanos(1) / taxa;
+        long inicio = System.nanoTime();
+        long fim = inicio + duracao.toNanos();
+        long proxima = inicio;
+        while (true) {
+            proxima += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * intervaloMedioNs);
+            if (proxima >= fim) {
+                break;
+            }
+            long espera = proxima - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            
+            Operacao operacao = sortear();
+            if (emAndamento.get() >= MAX_EM_ANDAMENTO) {
+                descartadas.increment();
+                erros.get(operacao).increment();
+                continue;
+            }
+            enviar(operacao, proxima, latencias, erros, emAndamento);
+        }
+        long duracaoNs = System.nanoTime() - inicio;
+        
+        long limiteEspera = System.nanoTime() + TIMEOUT.toNanos();
+        while (emAndamento.get() > 0 && System.nanoTime() < limiteEspera) {
+            Thread.sleep(20);
+        }
+        
+        Map<Operacao, Histogram> histogramas = new EnumMap<>(Operacao.class);
+        Map<Operacao, Long> totalErros = new EnumMap<>(Operacao.class);
+        for (Operacao operacao : Operacao.values()) {
+            histogramas.put(operacao, latencias.get(operacao).getIntervalHistogram());
+            totalErros.put(operacao, erros.get(operacao).sum());
+        }
+        return new ResultadoEtapa(taxa, duracaoNs / 1e9, histogramas, totalErros, descartadas.sum(),
+            emAndamento.get());
+    }
+    
+    private Operacao sortear() {
+        int sorteio = ThreadLocalRandom.current().nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        for (int i = 0; i < pesosAcumulados.length; i++) {
+            if (sorteio < pesosAcumulados[i]) {
+                return operacoes[i];
+            }
+        }
+        return operacoes[operacoes.length - 1];
+    }
+    
+    private void enviar(Operacao operacao, long previsto, Map<Operacao, Recorder> latencias,
+                        Map<Operacao, LongAdder> erros, AtomicInteger emAndamento) {
+        CndEmitida cnd = operacao == Operacao.EMITIR ? null : sortearCodigo();
+        // Sem CNDs emitidas ainda, as consultas viram emissões
+        Operacao efetiva = cnd == null ? Operacao.EMITIR : operacao;
+        
+        emAndamento.incrementAndGet();
+        cliente.sendAsync(requisicao(efetiva, cnd), HttpResponse.BodyHandlers.ofByteArray())
+            .whenComplete((resposta, erro) -> {
+                try {
+                    long latenciaUs = (System.nanoTime() - previsto) / 1_000;
+                    latencias.get(efetiva).recordValue(Math.min(latenciaUs, MAIOR_LATENCIA_US));
+                    if (erro != null || resposta.statusCode() >= 400) {
+                        erros.get(efetiva).increment();
+                    } else if (efetiva == Operacao.EMITIR) {
+                        guardar(resposta.body());
+                    }
+                } finally {
+                    emAndamento.decrementAndGet();
+                }
+            });
+    }
+    
+    private HttpRequest requisicao(Operacao operacao, CndEmitida cnd) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        return switch (operacao) {
+            case EMITIR -> post("/api/cnd/emitir/" + unidadeIds.get(aleatorio.nextInt(unidadeIds.size())),
+                "application/json", "{\"comAssinatura\":true,\"comPeriodo\":" + aleatorio.nextBoolean()
+                    + ",\"canalEmissao\":\"CARGA\"}");
+            case VALIDAR -> get("/api/cnd/validar/" + cnd.codigo());
+            case DOWNLOAD -> get("/api/cnd/download/" + cnd.codigo());
+            case HASH -> post("/api/cnd/validar-hash/" + cnd.codigo(), "text/plain", cnd.hash());
+        };
+    }
+    
+    private HttpRequest get(String caminho) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + caminho)).timeout(TIMEOUT).GET().build();
+    }
+    
+    private HttpRequest post(String caminho, String tipo, String corpo) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + caminho))
+            .timeout(TIMEOUT)
+            .header("Content-Type", tipo)
+            .POST(HttpRequest.BodyPublishers.ofString(corpo))
+            .build();
+    }
+    
+    private void guardar(byte[] corpo) {
+        try {
+            JsonNode resposta = objectMapper.readTree(corpo);
+            CndEmitida cnd = new CndEmitida(resposta.path("codigoValidacao").asText(),
+                resposta.path("hashDocumento").asText());
+            codigos.set((int) (totalCodigos.getAndIncrement() % CODIGOS_GUARDADOS), cnd);
+        } catch (IOException e) {
+            // Resposta sem JSON: a emissão já foi medida, só não entra no conjunto de códigos
+        }
+    }
+    
+    private CndEmitida sortearCodigo() {
+        long total = Math.min(totalCodigos.get(), CODIGOS_GUARDADOS);
+        return total == 0 ? null : codigos.get(ThreadLocalRandom.current().nextInt((int) total));
+    }
+    
+    long codigosEmitidos() {
+        return totalCodigos.get();
+    }
+    
+    private record CndEmitida(String codigo, String hash) {
+    }
+    
+    /**
+     * Medições de uma etapa. As latências estão em microssegundos.
+     *
+     * @param pendentes respostas que não chegaram dentro do timeout após o fim da etapa
+     */
+    record ResultadoEtapa(double taxa, double duracaoSegundos, Map<Operacao, Histogram> latencias,
+                          Map<Operacao, Long> erros, long descartadas, long pendentes) {
+        
+        long total() {
+            return latencias.values().stream().mapToLong(Histogram::getTotalCount).sum()
+                + descartadas + pendentes;
+        }
+        
+        long totalErros() {
+            return erros.values().stream().mapToLong(Long::longValue).sum() + pendentes;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package br.com.llz.cnd.carga;
+
+import java.util.Locale;
+
+/**
+ * Requisições do teste de carga. O nome em minúsculas é usado no mix
+ * ({@code --mix=emitir:10,validar:60}) e nos SLOs.
+ */
+enum Operacao {
+    /** POST /api/cnd/emitir/{unidadeId} */
+    EMITIR,
+    /** GET /api/cnd/validar/{codigo} */
+    VALIDAR,
+    /** GET /api/cnd/download/{codigo} */
+    DOWNLOAD,
+    /** POST /api/cnd/validar-hash/{codigo} */
+    HASH;
+    
+    String nome() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+    
+    static Operacao de(String nome) {
+        return valueOf(nome.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,273 @@
+package br.com.llz.cnd.carga;
+
+import br.com.llz.cnd.CndMvpApplication;
+import br.com.llz.cnd.carga.GeradorCarga.ResultadoEtapa;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Teste de carga ponta a ponta: sobe um PostgreSQL embarcado populado com
+ * {@code scripts/init.sql} e {@code data.sql}, inicia a aplicação no mesmo
+ * processo e aplica carga em modelo aberto ({@link GeradorCarga}) em taxas
+ * crescentes. Grava as distribuições de latência (HdrHistogram) e a curva de
+ * vazão em {@code target/carga} e termina com código 1 se algum SLO for violado.
+ * <p>
+ * Opções ({@code --nome=valor}): {@code taxas} (req/s por etapa),
+ * {@code duracao} e {@code aquecimento} (segundos), {@code mix}
+ * ({@code operacao:peso,...}), {@code unidades} (unidades geradas além das do
+ * data.sql), {@code slo} ({@code operacao:pNN:ms,...}), {@code max-erros} (%)
+ * e {@code saida}. Qualquer outra opção com ponto no nome vai para a
+ * aplicação, ex.: {@code --cnd.threads.virtuais=true}.
+ */
+public final class TesteCarga {
+    
+    private static final Map<String, String> PADROES = Map.of(
+        "taxas", "20,40,80",
+        "duracao", "20",
+        "aquecimento", "10",
+        "mix", "emitir:10,validar:60,download:20,hash:10",
+        "unidades", "2000",
+        "slo", "emitir:p99:1000,validar:p99:100,download:p99:100,hash:p99:100",
+        "max-erros", "1",
+        "saida", "target/carga");
+    
+    private static final String SQL_UNIDADES = """
+        INSERT INTO unidade (id, codigo, bloco, condominio_id, reg_ativo)
+        SELECT 1000 + g, (100 + g % 900)::text, chr(65 + g % 4), 1 + g % 3, true
+        FROM generate_series(1, ?) g
+        ON CONFLICT (id) DO NOTHING
+        """;
+    
+    private TesteCarga() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = new LinkedHashMap<>(PADROES);
+        List<String> argumentosAplicacao = new ArrayList<>();
+        for (String arg : args) {
+            String[] partes = arg.replaceFirst("^--", "").split("=", 2);
+            if (PADROES.containsKey(partes[0]) && partes.length == 2) {
+                opcoes.put(partes[0], partes[1]);
+            } else if (partes[0].contains(".")) {
+                argumentosAplicacao.add(arg);
+            } else {
+                System.err.println("Opção desconhecida: " + arg);
+                System.exit(2);
+            }
+        }
+        
+        Path saida = Path.of(opcoes.get("saida"));
+        Files.createDirectories(saida);
+        
+        List<String> violacoes;
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            List<Long> unidadeIds = popular(postgres, Integer.parseInt(opcoes.get("unidades")));
+            System.out.printf("PostgreSQL embarcado na porta %d com %d unidades%n",
+                postgres.getPort(), unidadeIds.size());
+            
+            try (ConfigurableApplicationContext aplicacao = iniciar(postgres, saida, argumentosAplicacao)) {
+                int porta = ((WebServerApplicationContext) aplicacao).getWebServer().getPort();
+                GeradorCarga gerador = new GeradorCarga("http://localhost:" + porta, mix(opcoes.get("mix")),
+                    unidadeIds);
+                List<Double> taxas = taxas(opcoes.get("taxas"));
+                Duration duracao = Duration.ofSeconds(Long.parseLong(opcoes.get("duracao")));
+                
+                // Aquecimento: JIT, pools de conexão e os primeiros códigos para as consultas
+                gerador.executar(taxas.get(0), Duration.ofSeconds(Long.parseLong(opcoes.get("aquecimento"))));
+                System.out.printf("Aquecimento concluído: %d CNDs emitidas%n%n", gerador.codigosEmitidos());
+                
+                List<ResultadoEtapa> etapas = new ArrayList<>();
+                for (double taxa : taxas) {
+                    ResultadoEtapa etapa = gerador.executar(taxa, duracao);
+                    etapas.add(etapa);
+                    imprimir(etapa, System.out);
+                    gravarDistribuicoes(etapa, saida);
+                }
+                gravarCurva(etapas, saida.resolve("curva.csv"));
+                violacoes = verificarSlos(etapas, opcoes.get("slo"), Double.parseDouble(opcoes.get("max-erros")));
+            }
+        }
+        
+        System.out.println("Relatórios em " + saida.toAbsolutePath());
+        if (!violacoes.isEmpty()) {
+            System.out.printf("%n%d violação(ões) de SLO:%n", violacoes.size());
+            violacoes.forEach(v -> System.out.println("  " + v));
+            System.exit(1);
+        }
+        System.out.println("SLOs atendidos em todas as etapas.");
+        System.exit(0);
+    }
+    
+    private static List<Long> popular(EmbeddedPostgres postgres, int unidades) throws IOException, SQLException {
+        try (Connection conexao = postgres.getPostgresDatabase().getConnection()) {
+            try (Statement statement = conexao.createStatement()) {
+                statement.execute(Files.readString(Path.of("scripts/init.sql")));
+                statement.execute(Files.readString(Path.of("src/main/resources/data.sql")));
+            }
+            try (PreparedStatement insert = conexao.prepareStatement(SQL_UNIDADES)) {
+                insert.setInt(1, unidades);
+                insert.executeUpdate();
+            }
+            
+            List<Long> ids = new ArrayList<>();
+            try (Statement statement = conexao.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT id FROM unidade WHERE reg_ativo ORDER BY id")) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+            return ids;
+        }
+    }
+    
+    private static ConfigurableApplicationContext iniciar(EmbeddedPostgres postgres, Path saida,
+                                                          List<String> argumentosAplicacao) {
+        List<String> argumentos = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+            "--spring.datasource.username=postgres",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--cnd.documentos.diretorio=" + saida.resolve("documentos"),
+            "--cnd.documentos.frio.diretorio=" + saida.resolve("frio"),
+            // Todas as requisições vêm do mesmo IP e repetem unidades: sem limites antifraude
+            "--cnd.max.tentativas.hora=1000000000",
+            "--cnd.max.tentativas.ip.hora=1000000000",
+            "--cnd.ciclo-vida.habilitado=false",
+            "--logging.level.root=WARN",
+            "--logging.level.br.com.llz=WARN"));
+        // Por último: as opções da linha de comando prevalecem
+        argumentos.addAll(argumentosAplicacao);
+        return new SpringApplicationBuilder(CndMvpApplication.class).run(argumentos.toArray(String[]::new));
+    }
+    
+    private static Map<Operacao, Integer> mix(String valor) {
+        Map<Operacao, Integer> mix = new LinkedHashMap<>();
+        for (String item : valor.split(",")) {
+            String[] partes = item.split(":");
+            int peso = Integer.parseInt(partes[1].trim());
+            if (peso > 0) {
+                mix.put(Operacao.de(partes[0]), peso);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Mix sem operações: " + valor);
+        }
+        return mix;
+    }
+    
+    private static List<Double> taxas(String valor) {
+        List<Double> taxas = new ArrayList<>();
+        for (String taxa : valor.split(",")) {
+            taxas.add(Double.parseDouble(taxa.trim()));
+        }
+        return taxas;
+    }
+    
+    private static void imprimir(ResultadoEtapa etapa, PrintStream saida) {
+        saida.printf(Locale.ROOT, "Etapa %.0f req/s: %d requisições em %.1f s, vazão %.1f req/s, %d erros"
+                + " (%d descartadas, %d sem resposta)%n", etapa.taxa(), etapa.total(), etapa.duracaoSegundos(),
+            etapa.total() / etapa.duracaoSegundos(), etapa.totalErros(), etapa.descartadas(), etapa.pendentes());
+        saida.printf("  %-9s %8s %9s %9s %9s %9s %9s %7s%n",
+            "operação", "total", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "erros");
+        for (Map.Entry<Operacao, Histogram> entrada : etapa.latencias().entrySet()) {
+            Histogram histograma = entrada.getValue();
+            if (histograma.getTotalCount() == 0) {
+                continue;
+            }
+            saida.printf(Locale.ROOT, "  %-9s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %7d%n", entrada.getKey().nome(),
+                histograma.getTotalCount(), histograma.getTotalCount() / etapa.duracaoSegundos(),
+                ms(histograma, 50), ms(histograma, 90), ms(histograma, 99), ms(histograma, 99.9),
+                etapa.erros().get(entrada.getKey()));
+        }
+        saida.println();
+    }
+    
+    /** Distribuição completa de cada operação, no formato .hgrm do HdrHistogram (em ms). */
+    private static void gravarDistribuicoes(ResultadoEtapa etapa, Path saida) throws IOException {
+        for (Map.Entry<Operacao, Histogram> entrada : etapa.latencias().entrySet()) {
+            if (entrada.getValue().getTotalCount() == 0) {
+                continue;
+            }
+            Path arquivo = saida.resolve(String.format(Locale.ROOT, "latencia-%.0frps-%s.hgrm",
+                etapa.taxa(), entrada.getKey().nome()));
+            try (PrintStream stream = new PrintStream(Files.newOutputStream(arquivo))) {
+                entrada.getValue().outputPercentileDistribution(stream, 1000.0);
+            }
+        }
+    }
+    
+    /** Curva de vazão × latência: uma linha por etapa e operação. */
+    private static void gravarCurva(List<ResultadoEtapa> etapas, Path arquivo) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(arquivo))) {
+            writer.println("taxa_alvo,operacao,requisicoes,vazao,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,erros");
+            for (ResultadoEtapa etapa : etapas) {
+                for (Map.Entry<Operacao, Histogram> entrada : etapa.latencias().entrySet()) {
+                    Histogram histograma = entrada.getValue();
+                    if (histograma.getTotalCount() == 0) {
+                        continue;
+                    }
+                    writer.printf(Locale.ROOT, "%.0f,%s,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f,%d%n", etapa.taxa(),
+                        entrada.getKey().nome(), histograma.getTotalCount(),
+                        histograma.getTotalCount() / etapa.duracaoSegundos(), ms(histograma, 50),
+                        ms(histograma, 90), ms(histograma, 99), ms(histograma, 99.9),
+                        histograma.getMaxValue() / 1000.0, etapa.erros().get(entrada.getKey()));
+                }
+            }
+        }
+    }
+    
+    /**
+     * SLOs no formato {@code operacao:pNN:ms}, ex.: {@code validar:p99:100},
+     * verificados em todas as etapas, além do percentual máximo de erros.
+     */
+    private static List<String> verificarSlos(List<ResultadoEtapa> etapas, String slos, double maxErros) {
+        List<String> violacoes = new ArrayList<>();
+        for (ResultadoEtapa etapa : etapas) {
+            for (String slo : slos.split(",")) {
+                if (slo.isBlank()) {
+                    continue;
+                }
+                String[] partes = slo.trim().split(":");
+                Operacao operacao = Operacao.de(partes[0]);
+                double percentil = Double.parseDouble(partes[1].substring(1));
+                double limite = Double.parseDouble(partes[2]);
+                Histogram histograma = etapa.latencias().get(operacao);
+                if (histograma.getTotalCount() > 0 && ms(histograma, percentil) > limite) {
+                    violacoes.add(String.format(Locale.ROOT, "%.0f req/s: %s p%s = %.1f ms (limite %.0f ms)",
+                        etapa.taxa(), operacao.nome(), partes[1].substring(1), ms(histograma, percentil), limite));
+                }
+            }
+            double percentualErros = etapa.total() == 0 ? 0 : 100.0 * etapa.totalErros() / etapa.total();
+            if (percentualErros > maxErros) {
+                violacoes.add(String.format(Locale.ROOT, "%.0f req/s: %.2f%% de erros (limite %.2f%%)",
+                    etapa.taxa(), percentualErros, maxErros));
+            }
+        }
+        return violacoes;
+    }
+    
+    private static double ms(Histogram histograma, double percentil) {
+        return histograma.getValueAtPercentile(percentil) / 1000.0;
+    }
+}
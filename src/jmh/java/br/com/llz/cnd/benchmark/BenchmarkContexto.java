@@ -0,0 +1,67 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.dto.UnidadeCndData;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Sobe apenas os beans necessários para os benchmarks, sem banco de dados,
+ * resolvendo os {@code @Value} a partir do application.properties.
+ */
+public final class BenchmarkContexto {
+    
+    private BenchmarkContexto() {
+    }
+    
+    public static AnnotationConfigApplicationContext criar(Class<?>... componentes) {
+        return criar(context -> { }, componentes);
+    }
+    
+    /**
+     * Cria o contexto registrando beans adicionais (ex.: certificado de teste)
+     * antes dos componentes.
+     */
+    public static AnnotationConfigApplicationContext criar(Consumer<GenericApplicationContext> beans,
+                                                           Class<?>... componentes) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        try {
+            context.getEnvironment().getPropertySources()
+                .addFirst(new ResourcePropertySource(
+                    new EncodedResource(new ClassPathResource("application.properties"), StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new IllegalStateException("application.properties não encontrado", e);
+        }
+        beans.accept(context);
+        context.register(componentes);
+        context.refresh();
+        return context;
+    }
+    
+    public static UnidadeCndData dadosUnidade(boolean comPeriodo) {
+        return UnidadeCndData.builder()
+            .nomeCondominio("Condomínio Residencial Jardim das Flores")
+            .logradouro("Rua das Flores")
+            .numero("123")
+            .bairro("Centro")
+            .cidade("Belo Horizonte")
+            .uf("MG")
+            .cep("30112-000")
+            .unidadeCodigo("101")
+            .bloco("A")
+            .validadeDocumento(LocalDateTime.now().plusDays(30).format(DateTimeFormatter.ofPattern("dd/MM/yyyy")))
+            .usuario("Benchmark")
+            .dataVencimento(comPeriodo ? Arrays.asList("01/01/2024", "01/02/2024", "01/03/2024") : null)
+            .comPeriodo(comPeriodo)
+            .build();
+    }
+}
@@ -0,0 +1,108 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.service.CndAssinadorPdf;
+import br.com.llz.cnd.service.CndPdfService;
+import br.com.llz.cnd.service.CndPdfTemplate;
+import br.com.llz.cnd.storage.DocumentoGerado;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assinaturas por segundo por núcleo: caminho antigo (KeyStore.load a cada
+ * documento + assinatura crua) contra o {@link CndAssinadorPdf} com contexto em cache.
+ * Usa um certificado autoassinado gerado no setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CndAssinaturaBenchmark {
+    
+    static final String ALIAS = "llz-test";
+    static final char[] SENHA = "123456".toCharArray();
+    
+    private AnnotationConfigApplicationContext context;
+    private CndAssinadorPdf assinador;
+    private byte[] keyStorePkcs12;
+    private byte[] documento;
+    
+    @Setup
+    public void setup() throws Exception {
+        KeyStore keyStore = gerarKeyStore();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        keyStore.store(baos, SENHA);
+        keyStorePkcs12 = baos.toByteArray();
+        
+        context = BenchmarkContexto.criar(ctx -> {
+            ctx.registerBean("cndKeyStore", KeyStore.class, () -> keyStore);
+            ctx.registerBean("cndPrivateKey", PrivateKey.class, () -> chavePrivada(keyStore));
+        }, CndPdfTemplate.class, CndPdfService.class, CndAssinadorPdf.class);
+        assinador = context.getBean(CndAssinadorPdf.class);
+        documento = context.getBean(CndPdfService.class).gerarPdf(BenchmarkContexto.dadosUnidade(false), "CND240315001");
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    /** Caminho anterior: carrega o PKCS12 e assina os bytes crus a cada documento. */
+    @Benchmark
+    public byte[] legadoKeyStorePorDocumento() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(new ByteArrayInputStream(keyStorePkcs12), SENHA);
+        PrivateKey privateKey = (PrivateKey) keyStore.getKey(ALIAS, SENHA);
+        
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(privateKey);
+        signature.update(documento);
+        return signature.sign();
+    }
+    
+    @Benchmark
+    public DocumentoGerado padesContextoEmCache() {
+        return assinador.assinar(documento);
+    }
+    
+    static KeyStore gerarKeyStore() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        
+        X500Name subject = new X500Name("CN=LLZ Garantidora, OU=TI, O=LLZ");
+        Date inicio = new Date();
+        Date fim = new Date(inicio.getTime() + TimeUnit.DAYS.toMillis(365));
+        X509Certificate certificado = new JcaX509CertificateConverter().getCertificate(
+            new JcaX509v3CertificateBuilder(subject, BigInteger.ONE, inicio, fim, subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+        
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry(ALIAS, keyPair.getPrivate(), SENHA, new Certificate[]{certificado});
+        return keyStore;
+    }
+    
+    private static PrivateKey chavePrivada(KeyStore keyStore) {
+        try {
+            return (PrivateKey) keyStore.getKey(ALIAS, SENHA);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.dto.UnidadeCndData;
+import br.com.llz.cnd.service.CndPdfService;
+import br.com.llz.cnd.service.CndPdfTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput e alocação por documento de {@link CndPdfService#gerarPdf}.
+ * Rodar com {@code -prof gc} para ver bytes alocados por operação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CndPdfBenchmark {
+    
+    @Param({"false", "true"})
+    private boolean comPeriodo;
+    
+    private AnnotationConfigApplicationContext context;
+    private CndPdfService cndPdfService;
+    private UnidadeCndData dados;
+    
+    @Setup
+    public void setup() {
+        context = BenchmarkContexto.criar(CndPdfTemplate.class, CndPdfService.class);
+        cndPdfService = context.getBean(CndPdfService.class);
+        dados = BenchmarkContexto.dadosUnidade(comPeriodo);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public byte[] gerarPdf() {
+        return cndPdfService.gerarPdf(dados, "CND240315001");
+    }
+}
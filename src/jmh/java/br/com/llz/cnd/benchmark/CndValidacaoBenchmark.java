@@ -0,0 +1,69 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.CndMvpApplication;
+import br.com.llz.cnd.entity.UnidadeCnd;
+import br.com.llz.cnd.repository.CndValidacaoResumo;
+import br.com.llz.cnd.repository.UnidadeCndRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consulta de validação por código: entidade completa com unidade e condomínio
+ * carregados sob demanda contra a projeção com fetch join. Rode com
+ * {@code -prof gc} e compare {@code gc.alloc.rate.norm} (bytes por consulta).
+ * Precisa do PostgreSQL do docker-compose (ou outro informado em
+ * {@code -Dspring.datasource.url}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CndValidacaoBenchmark {
+    
+    private static final String CODIGO = "CNDBENCHVALIDA";
+    
+    private ConfigurableApplicationContext context;
+    private UnidadeCndRepository repository;
+    private TransactionTemplate transactionTemplate;
+    
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(CndMvpApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties("spring.jpa.show-sql=false", "cnd.assinatura.lote.intervalo-ms=3600000")
+            .run();
+        repository = context.getBean(UnidadeCndRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        
+        context.getBean(JdbcTemplate.class).update(
+            "INSERT INTO unidade_cnd (codigo_validacao, unidade_id, hash_parametros, status, canal_emissao, " +
+            "hash_documento_assinado, tamanho_documento_assinado, dados_assinatura, dt_assinatura) " +
+            "VALUES (?, 1, 'benchmark', 'ASSINADO', 'WEB', repeat('a', 64), 12480, " +
+            "'{\"algoritmo\":\"SHA256withRSA\",\"certificado\":\"CN=LLZ Garantidora\"}', now()) " +
+            "ON CONFLICT (codigo_validacao) DO NOTHING", CODIGO);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public String entidadeCompleta() {
+        return transactionTemplate.execute(status -> {
+            UnidadeCnd cnd = repository.findByCodigoValidacao(CODIGO).orElseThrow();
+            return cnd.getStatus() + cnd.getUnidade().getCodigo() + cnd.getUnidade().getBloco()
+                + cnd.getUnidade().getCondominio().getRazaoSocial() + cnd.getHashDocumentoAssinado();
+        });
+    }
+    
+    @Benchmark
+    public CndValidacaoResumo projecao() {
+        return repository.buscarValidacao(CODIGO).orElseThrow();
+    }
+}
@@ -0,0 +1,151 @@
+package br.com.llz.cnd.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compara um resultado JMH ({@code -rf json}) com o baseline versionado e
+ * termina com código 1 se algum benchmark piorou além do limite: throughput
+ * menor, tempo maior ou mais bytes alocados por operação ({@code -prof gc}).
+ * Benchmarks sem baseline são apenas listados.
+ * <p>
+ * A média sozinha não basta: com poucos forks e uma máquina compartilhada ela
+ * oscila mais que o limite entre execuções sem mudança nenhuma no código. Só
+ * conta como regressão de desempenho a variação acima do limite cujo intervalo
+ * de confiança do JMH (99,9%) não se sobrepõe ao do baseline.
+ * <p>
+ * Uso: {@code ComparadorBaseline <baseline.json> <resultado.json> [limite-%]}
+ */
+public final class ComparadorBaseline {
+    
+    private static final double LIMITE_PADRAO = 10;
+    
+    /** Variações de alocação abaixo disso são ruído do profiler, não regressão. */
+    private static final double FOLGA_ALOCACAO_BYTES = 128;
+    
+    private static final String ALOCACAO = "gc.alloc.rate.norm";
+    
+    private ComparadorBaseline() {
+    }
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: ComparadorBaseline <baseline.json> <resultado.json> [limite-%]");
+            System.exit(2);
+        }
+        double limite = (args.length > 2 ? Double.parseDouble(args[2]) : LIMITE_PADRAO) / 100;
+        Map<String, Medida> baseline = ler(Path.of(args[0]));
+        Map<String, Medida> resultado = ler(Path.of(args[1]));
+        
+        List<String> regressoes = new ArrayList<>();
+        System.out.printf("%-75s %22s %22s %9s %12s %12s%n",
+            "Benchmark", "Baseline", "Atual", "Variação", "Alocação B", "Alocação A");
+        for (Map.Entry<String, Medida> entrada : resultado.entrySet()) {
+            Medida atual = entrada.getValue();
+            Medida base = baseline.get(entrada.getKey());
+            if (base == null) {
+                System.out.printf("%-75s %22s %22s %9s  (sem baseline)%n", entrada.getKey(), "-", atual, "");
+                continue;
+            }
+            
+            double variacao = (atual.score() - base.score()) / base.score();
+            boolean pior = (atual.maiorMelhor() ? variacao < -limite : variacao > limite) && separados(base, atual);
+            boolean alocouMais = !Double.isNaN(base.alocacao()) && !Double.isNaN(atual.alocacao())
+                && atual.alocacao() > base.alocacao() * (1 + limite)
+                && atual.alocacao() - base.alocacao() > FOLGA_ALOCACAO_BYTES;
+            
+            System.out.printf("%-75s %22s %22s %+8.1f%% %12.0f %12.0f%s%n", entrada.getKey(), base,
+                atual, variacao * 100, base.alocacao(), atual.alocacao(),
+                pior || alocouMais ? "  REGRESSÃO" : "");
+            if (pior) {
+                regressoes.add(entrada.getKey() + ": " + String.format("%+.1f%%", variacao * 100) + " " + atual.unidade());
+            }
+            if (alocouMais) {
+                regressoes.add(entrada.getKey() + ": alocação " + Math.round(base.alocacao()) + " -> "
+                    + Math.round(atual.alocacao()) + " B/op");
+            }
+        }
+        
+        if (!regressoes.isEmpty()) {
+            System.out.printf("%n%d regressão(ões) acima de %.0f%% e fora do intervalo de confiança:%n",
+                regressoes.size(), limite * 100);
+            regressoes.forEach(r -> System.out.println("  " + r));
+            System.exit(1);
+        }
+        System.out.printf("%nSem regressões acima de %.0f%% fora do intervalo de confiança.%n", limite * 100);
+    }
+    
+    /**
+     * Os intervalos de confiança não se sobrepõem no sentido da piora: a
+     * diferença não é explicada pelo ruído medido. Sem intervalo (uma única
+     * iteração), vale só o limite.
+     */
+    private static boolean separados(Medida base, Medida atual) {
+        if (Double.isNaN(base.minimo()) || Double.isNaN(atual.minimo())) {
+            return true;
+        }
+        return atual.maiorMelhor() ? atual.maximo() < base.minimo() : atual.minimo() > base.maximo();
+    }
+    
+    /** Resultados por benchmark e parâmetros, ex.: {@code ...CndPdfBenchmark.gerarPdf[comPeriodo=true]}. */
+    private static Map<String, Medida> ler(Path arquivo) throws IOException {
+        Map<String, Medida> medidas = new LinkedHashMap<>();
+        for (JsonNode execucao : new ObjectMapper().readTree(arquivo.toFile())) {
+            StringBuilder chave = new StringBuilder(execucao.path("benchmark").asText());
+            JsonNode parametros = execucao.path("params");
+            if (parametros.isObject()) {
+                Map<String, String> ordenados = new TreeMap<>();
+                parametros.fields().forEachRemaining(p -> ordenados.put(p.getKey(), p.getValue().asText()));
+                chave.append(ordenados.toString().replace('{', '[').replace('}', ']'));
+            }
+            
+            JsonNode principal = execucao.path("primaryMetric");
+            JsonNode confianca = principal.path("scoreConfidence");
+            medidas.put(chave.toString(), new Medida(
+                principal.path("score").asDouble(),
+                principal.path("scoreError").asDouble(Double.NaN),
+                confianca.path(0).asDouble(Double.NaN),
+                confianca.path(1).asDouble(Double.NaN),
+                principal.path("scoreUnit").asText(),
+                "thrpt".equals(execucao.path("mode").asText()),
+                alocacao(execucao.path("secondaryMetrics"))));
+        }
+        return medidas;
+    }
+    
+    private static double alocacao(JsonNode secundarias) {
+        Iterator<Map.Entry<String, JsonNode>> campos = secundarias.fields();
+        while (campos.hasNext()) {
+            Map.Entry<String, JsonNode> campo = campos.next();
+            if (campo.getKey().endsWith(ALOCACAO)) {
+                return campo.getValue().path("score").asDouble();
+            }
+        }
+        return Double.NaN;
+    }
+    
+    /** Média, erro e intervalo de confiança como gravados pelo JMH. */
+    private record Medida(
+        double score,
+        double erro,
+        double minimo,
+        double maximo,
+        String unidade,
+        boolean maiorMelhor,
+        double alocacao) {
+        
+        @Override
+        public String toString() {
+            return Double.isNaN(erro) ? String.format("%.3f", score) : String.format("%.3f ± %.3f", score, erro);
+        }
+    }
+}
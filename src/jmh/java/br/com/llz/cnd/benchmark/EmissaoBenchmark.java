@@ -0,0 +1,80 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.CndMvpApplication;
+import br.com.llz.cnd.dto.UnidadeCndPdfResponse;
+import br.com.llz.cnd.dto.UnidadeCndRequest;
+import br.com.llz.cnd.service.UnidadeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Emissões por segundo com 16 threads conforme o tamanho do pool Hikari.
+ * {@code emitir} é o fluxo em fases (conexão só na leitura e na gravação);
+ * {@code emitirEmTransacaoUnica} envolve o mesmo fluxo em uma transação, como
+ * era antes, prendendo a conexão durante a geração do PDF. Alterna entre as
+ * unidades 1 a 8 dos dados de teste; com {@code cnd.expiracao.dias=0} as CNDs
+ * já nascem vencidas, então toda emissão gera PDF e insere (sem reaproveitar a
+ * anterior). Precisa do PostgreSQL do docker-compose (ou outro informado em
+ * {@code -Dspring.datasource.url}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class EmissaoBenchmark {
+    
+    @Param({"2", "4", "8"})
+    private int tamanhoPool;
+    
+    private final AtomicInteger sequencia = new AtomicInteger();
+    private ConfigurableApplicationContext context;
+    private UnidadeService unidadeService;
+    private TransactionTemplate transactionTemplate;
+    
+    @Setup
+    public void setup() {
+        // Propriedades de sistema têm precedência sobre o application.properties
+        System.setProperty("spring.datasource.hikari.maximum-pool-size", String.valueOf(tamanhoPool));
+        System.setProperty("spring.jpa.show-sql", "false");
+        System.setProperty("cnd.max.tentativas.hora", String.valueOf(Integer.MAX_VALUE));
+        System.setProperty("cnd.assinatura.lote.intervalo-ms", "3600000");
+        System.setProperty("cnd.expiracao.dias", "0");
+        
+        context = new SpringApplicationBuilder(CndMvpApplication.class)
+            .web(WebApplicationType.NONE)
+            .run();
+        unidadeService = context.getBean(UnidadeService.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public UnidadeCndPdfResponse emitir() {
+        int n = sequencia.getAndIncrement();
+        return unidadeService.emitirCndPdf(1L + (n & 7), request(n), null);
+    }
+    
+    @Benchmark
+    public UnidadeCndPdfResponse emitirEmTransacaoUnica() {
+        int n = sequencia.getAndIncrement();
+        return transactionTemplate.execute(status -> unidadeService.emitirCndPdf(1L + (n & 7), request(n), null));
+    }
+    
+    private static UnidadeCndRequest request(int n) {
+        UnidadeCndRequest request = new UnidadeCndRequest();
+        request.setComPeriodo((n & 8) != 0);
+        request.setComAssinatura((n & 16) != 0);
+        request.setCanalEmissao("API");
+        return request;
+    }
+}
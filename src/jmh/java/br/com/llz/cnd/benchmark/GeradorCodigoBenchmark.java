@@ -0,0 +1,45 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.service.GeradorCodigoValidacao;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geração de códigos de validação: o gerador Snowflake/base32 contra o formato
+ * anterior ({@code Random} + {@code DateTimeFormatter} a cada chamada). O
+ * grupo com 4 threads mede a disputa no CAS do gerador.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeradorCodigoBenchmark {
+    
+    private final GeradorCodigoValidacao gerador = new GeradorCodigoValidacao(1);
+    
+    @Benchmark
+    public String gerador() {
+        return gerador.gerar();
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public String geradorConcorrente() {
+        return gerador.gerar();
+    }
+    
+    @Benchmark
+    public String formatoAnterior() {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyMMdd"));
+        String random = String.format("%03d", new Random().nextInt(1000));
+        return "CND" + timestamp + random;
+    }
+    
+    @Benchmark
+    public boolean formatoValido() {
+        return GeradorCodigoValidacao.formatoValido("CND0A8MR4JAR04000");
+    }
+}
@@ -0,0 +1,46 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.storage.DocumentoGerado;
+import br.com.llz.cnd.storage.SaidaComHash;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-256 dos documentos nos tamanhos reais: ~7 KB (original), ~25 KB
+ * (assinado) e 256 KB (template com imagens maiores). Compara o hash sobre o
+ * documento pronto ({@code DigestUtils.sha256Hex}) com o calculado durante a
+ * escrita ({@link SaidaComHash}), que inclui a cópia para o buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HashDocumentoBenchmark {
+    
+    @Param({"7168", "25600", "262144"})
+    private int tamanho;
+    
+    private byte[] documento;
+    
+    @Setup
+    public void setup() {
+        // O custo do SHA-256 depende só do tamanho, não do conteúdo
+        documento = new byte[tamanho];
+        new Random(42).nextBytes(documento);
+    }
+    
+    @Benchmark
+    public String sha256Hex() {
+        return DigestUtils.sha256Hex(documento);
+    }
+    
+    @Benchmark
+    public DocumentoGerado saidaComHash() throws IOException {
+        SaidaComHash saida = new SaidaComHash(tamanho);
+        saida.write(documento, 0, documento.length);
+        return saida.concluir();
+    }
+}
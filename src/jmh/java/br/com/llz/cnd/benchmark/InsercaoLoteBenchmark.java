@@ -0,0 +1,157 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.CndMvpApplication;
+import br.com.llz.cnd.service.CndPdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gravação de CNDs em bloco, como no bloco da emissão em lote: 50 linhas de
+ * {@code unidade_cnd} e os 50 PDFs em {@code documento_cnd} (o
+ * {@code JdbcDocumentoStore}) por transação. Compara comando a comando com o
+ * batch do JdbcTemplate usado pela emissão em lote (desativação das anteriores
+ * e INSERT com o id do DEFAULT da coluna), com e sem
+ * {@code reWriteBatchedInserts} no driver. O resultado é em CNDs por segundo.
+ * Precisa do PostgreSQL do docker-compose com o scripts/init.sql atual (ou
+ * outro informado em {@code -Dspring.datasource.url}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class InsercaoLoteBenchmark {
+    
+    private static final int BLOCO = 50;
+    private static final String CANAL = "BENCH";
+    
+    // Mesmos comandos de UnidadeService.SQL_DESATIVAR_ANTERIORES, UnidadeService.SQL_INSERIR e JdbcDocumentoStore
+    private static final String SQL_DESATIVAR_ANTERIORES =
+        "UPDATE unidade_cnd SET reg_ativo = false, dt_alteracao = now() " +
+        "WHERE unidade_id = ? AND hash_parametros = ? AND reg_ativo " +
+        "AND (dt_expiracao < now() OR status = 'ERRO')";
+    private static final String SQL_INSERIR_CND =
+        "INSERT INTO unidade_cnd (codigo_validacao, unidade_id, hash_parametros, status, canal_emissao, " +
+        "hash_documento_pdf, tamanho_documento_pdf, dt_criacao, dt_expiracao, ip_origem, reg_ativo, dt_alteracao) " +
+        "VALUES (?, ?, ?, 'PROCESSANDO', ?, ?, ?, ?, ?, ?, true, ?) " +
+        "ON CONFLICT DO NOTHING";
+    private static final String SQL_INSERIR_DOCUMENTO =
+        "INSERT INTO documento_cnd (hash, tamanho, conteudo) VALUES (?, ?, ?) ON CONFLICT (hash) DO NOTHING";
+    
+    @Param({"false", "true"})
+    private boolean reescrever;
+    
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private byte[] pdf;
+    private long sequencia;
+    
+    @Setup
+    public void setup() {
+        // Propriedades de sistema têm precedência sobre o application.properties
+        System.setProperty("spring.datasource.hikari.data-source-properties.reWriteBatchedInserts",
+            String.valueOf(reescrever));
+        System.setProperty("spring.jpa.show-sql", "false");
+        // A fila de assinatura drena enquanto os lotes vêm cheios: com um lote maior que a
+        // fila ela passa uma vez na subida e não concorre com as inserções
+        System.setProperty("cnd.assinatura.lote.intervalo-ms", "3600000");
+        System.setProperty("cnd.assinatura.lote.tamanho", "100000");
+        System.setProperty("cnd.ciclo-vida.habilitado", "false");
+        
+        context = new SpringApplicationBuilder(CndMvpApplication.class)
+            .web(WebApplicationType.NONE)
+            .run();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        pdf = context.getBean(CndPdfService.class)
+            .gerarPdf(BenchmarkContexto.dadosUnidade(true), "CND0A8MVEM9GZG00V");
+        limpar();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void limpar() {
+        jdbcTemplate.update("DELETE FROM unidade_cnd WHERE canal_emissao = ?", CANAL);
+        jdbcTemplate.update("DELETE FROM documento_cnd WHERE hash LIKE 'bench%'");
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BLOCO)
+    public void jdbcComandoAComando() {
+        List<Linha> linhas = bloco();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Linha linha : linhas) {
+                jdbcTemplate.update(SQL_DESATIVAR_ANTERIORES, linha.unidadeId(), linha.hashParametros());
+                jdbcTemplate.update(SQL_INSERIR_DOCUMENTO, linha.hash(), (long) pdf.length, pdf);
+                jdbcTemplate.update(SQL_INSERIR_CND, linha.codigo(), linha.unidadeId(), linha.hashParametros(),
+                    CANAL, linha.hash(), (long) pdf.length, linha.criacao(), linha.expiracao(), null,
+                    linha.criacao());
+            }
+        });
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BLOCO)
+    public void jdbcBatch() {
+        List<Linha> linhas = bloco();
+        transactionTemplate.executeWithoutResult(status -> {
+            inserirDocumentos(linhas);
+            jdbcTemplate.batchUpdate(SQL_DESATIVAR_ANTERIORES, linhas, linhas.size(), (ps, linha) -> {
+                ps.setLong(1, linha.unidadeId());
+                ps.setString(2, linha.hashParametros());
+            });
+            jdbcTemplate.batchUpdate(SQL_INSERIR_CND, linhas, linhas.size(), (ps, linha) -> {
+                ps.setString(1, linha.codigo());
+                ps.setLong(2, linha.unidadeId());
+                ps.setString(3, linha.hashParametros());
+                ps.setString(4, CANAL);
+                ps.setString(5, linha.hash());
+                ps.setLong(6, pdf.length);
+                ps.setTimestamp(7, linha.criacao());
+                ps.setTimestamp(8, linha.expiracao());
+                ps.setString(9, null);
+                ps.setTimestamp(10, linha.criacao());
+            });
+        });
+    }
+    
+    private void inserirDocumentos(List<Linha> linhas) {
+        jdbcTemplate.batchUpdate(SQL_INSERIR_DOCUMENTO, linhas, linhas.size(), (ps, linha) -> {
+            ps.setString(1, linha.hash());
+            ps.setLong(2, pdf.length);
+            ps.setBytes(3, pdf);
+        });
+    }
+    
+    /** Chaves únicas por linha; unidades 1 a 8 dos dados de teste. */
+    private List<Linha> bloco() {
+        Timestamp criacao = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expiracao = Timestamp.valueOf(LocalDateTime.now().plusDays(30));
+        List<Linha> linhas = new ArrayList<>(BLOCO);
+        for (int i = 0; i < BLOCO; i++) {
+            long n = sequencia++;
+            linhas.add(new Linha(String.format("BENCH%015d", n), 1L + (n & 7), "bench-" + n,
+                String.format("bench%059d", n), criacao, expiracao));
+        }
+        return linhas;
+    }
+    
+    private record Linha(String codigo, long unidadeId, String hashParametros, String hash,
+                         Timestamp criacao, Timestamp expiracao) {
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.service.CndPdfService;
+import com.google.zxing.WriterException;
+import com.itextpdf.io.image.ImageData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QR Code impresso no rodapé da CND ({@link CndPdfService#imagemQrCode}):
+ * codificação ZXing e conversão para imagem de 1 bit, sem o PDF em volta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QrCodeBenchmark {
+    
+    private static final String URL = "https://cnd.llz.com.br/validar/CND0A8MVEM9GZG00V";
+    
+    @Benchmark
+    public ImageData imagemQrCode() throws WriterException {
+        return CndPdfService.imagemQrCode(URL);
+    }
+}
@@ -0,0 +1,103 @@
+package br.com.llz.cnd.benchmark;
+
+import br.com.llz.cnd.service.CndAssinadorPdf;
+import br.com.llz.cnd.service.CndPdfService;
+import br.com.llz.cnd.service.CndPdfTemplate;
+import br.com.llz.cnd.storage.DocumentoGerado;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfStream;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes por CND: template, documento original e assinado, com e sem período,
+ * e o tamanho após gzip (o que trafega com compressão HTTP). Lista também os
+ * maiores streams do documento assinado, para achar o que pesa no PDF.
+ * Com um diretório como argumento, grava lá os PDFs gerados.
+ * <p>
+ * Uso: {@code mvn -Pbenchmark package -DskipTests exec:exec -Djmh.main=br.com.llz.cnd.benchmark.TamanhoCnd -Djmh.args=[diretório]}
+ */
+public final class TamanhoCnd {
+    
+    private TamanhoCnd() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        KeyStore keyStore = CndAssinaturaBenchmark.gerarKeyStore();
+        PrivateKey privateKey = (PrivateKey) keyStore.getKey(CndAssinaturaBenchmark.ALIAS,
+            CndAssinaturaBenchmark.SENHA);
+        try (AnnotationConfigApplicationContext context = BenchmarkContexto.criar(beans -> {
+            beans.registerBean("cndKeyStore", KeyStore.class, () -> keyStore);
+            beans.registerBean("cndPrivateKey", PrivateKey.class, () -> privateKey);
+        }, CndPdfTemplate.class, CndPdfService.class, CndAssinadorPdf.class)) {
+            
+            CndPdfService pdfService = context.getBean(CndPdfService.class);
+            CndAssinadorPdf assinador = context.getBean(CndAssinadorPdf.class);
+            
+            System.out.printf("%-22s %10s %10s%n", "Documento", "Bytes", "Gzip");
+            byte[] template = context.getBean(CndPdfTemplate.class).getConteudo();
+            System.out.printf("%-22s %10d %10d%n", "template", template.length, gzip(template));
+            
+            byte[] assinado = null;
+            for (boolean comPeriodo : new boolean[]{false, true}) {
+                DocumentoGerado original = pdfService.gerarDocumento(
+                    BenchmarkContexto.dadosUnidade(comPeriodo), "CND0A8MVEM9GZG00V");
+                assinado = assinador.assinar(original.conteudo()).conteudo();
+                String sufixo = comPeriodo ? " (período)" : "";
+                if (args.length > 0) {
+                    Path diretorio = Files.createDirectories(Path.of(args[0]));
+                    String nome = comPeriodo ? "cnd-periodo" : "cnd";
+                    Files.write(diretorio.resolve(nome + "-original.pdf"), original.conteudo());
+                    Files.write(diretorio.resolve(nome + "-assinado.pdf"), assinado);
+                }
+                System.out.printf("%-22s %10d %10d%n", "original" + sufixo, original.conteudo().length,
+                    gzip(original.conteudo()));
+                System.out.printf("%-22s %10d %10d%n", "assinado" + sufixo, assinado.length, gzip(assinado));
+            }
+            
+            System.out.printf("%nMaiores streams do documento assinado:%n");
+            maioresStreams(assinado).forEach(s -> System.out.println("  " + s));
+        }
+    }
+    
+    private static int gzip(byte[] conteudo) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(saida)) {
+            gzip.write(conteudo);
+        }
+        return saida.size();
+    }
+    
+    /** Streams por tamanho comprimido, do maior para o menor. */
+    private static List<String> maioresStreams(byte[] documento) throws IOException {
+        List<Map.Entry<Integer, String>> streams = new ArrayList<>();
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(new ByteArrayInputStream(documento)))) {
+            for (int i = 1; i < pdf.getNumberOfPdfObjects(); i++) {
+                PdfObject objeto = pdf.getPdfObject(i);
+                if (objeto instanceof PdfStream stream) {
+                    String tipo = String.valueOf(stream.getAsName(PdfName.Subtype) != null
+                        ? stream.getAsName(PdfName.Subtype) : stream.getAsName(PdfName.Type));
+                    streams.add(Map.entry(stream.getBytes(false).length, "obj " + i + " " + tipo));
+                }
+            }
+        }
+        return streams.stream()
+            .sorted(Map.Entry.<Integer, String>comparingByKey().reversed())
+            .map(s -> String.format("%8d  %s", s.getKey(), s.getValue()))
+            .toList();
+    }
+}
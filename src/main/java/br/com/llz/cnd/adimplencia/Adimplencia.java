@@ -0,0 +1,8 @@
+package br.com.llz.cnd.adimplencia;
+
+public enum Adimplencia {
+    ADIMPLENTE,
+    INADIMPLENTE,
+    /** Unidade fora do índice (ainda não materializada). */
+    DESCONHECIDA
+}
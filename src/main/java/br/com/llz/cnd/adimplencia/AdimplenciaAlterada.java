@@ -0,0 +1,9 @@
+package br.com.llz.cnd.adimplencia;
+
+/**
+ * Evento publicado (via {@code ApplicationEventPublisher}) pelas integrações
+ * de pagamentos e cobranças quando a situação de uma unidade muda: um
+ * pagamento quita o último débito ou uma cobrança vence sem pagamento.
+ */
+public record AdimplenciaAlterada(Long unidadeId, boolean adimplente) {
+}
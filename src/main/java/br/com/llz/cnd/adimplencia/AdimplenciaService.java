@@ -0,0 +1,145 @@
+package br.com.llz.cnd.adimplencia;
+
+import br.com.llz.cnd.repository.UnidadeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Situação de adimplência das unidades sem apurar débitos na emissão. A
+ * situação fica materializada na tabela {@code unidade_adimplencia}, mantida
+ * pelos eventos {@link AdimplenciaAlterada} e completada por uma reconstrução
+ * agendada que só insere as unidades ainda sem situação, e é consultada em um
+ * índice em memória ({@link IndiceAdimplencia}).
+ * <p>
+ * Cada nó relê as linhas alteradas a cada {@code cnd.adimplencia.atualizacao-ms}.
+ * Se o índice ficar mais de {@code cnd.adimplencia.max-defasagem-segundos} sem
+ * atualizar (banco indisponível, por exemplo), as consultas passam a ler a
+ * tabela pela chave primária até a próxima atualização com sucesso.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AdimplenciaService {
+    
+    // Regra atual do MVP (unidade ativa) só para unidades sem situação; as existentes vêm dos eventos
+    private static final String SQL_RECONSTRUIR =
+        "INSERT INTO unidade_adimplencia (unidade_id, adimplente, dt_atualizacao) " +
+        "SELECT id, COALESCE(reg_ativo, false), now() FROM unidade " +
+        "ON CONFLICT (unidade_id) DO NOTHING";
+    
+    private static final String SQL_GRAVAR =
+        "INSERT INTO unidade_adimplencia (unidade_id, adimplente, dt_atualizacao) VALUES (?, ?, now()) " +
+        "ON CONFLICT (unidade_id) DO UPDATE SET adimplente = EXCLUDED.adimplente, dt_atualizacao = now()";
+    
+    private static final String SQL_CARREGAR = "SELECT unidade_id, adimplente FROM unidade_adimplencia";
+    
+    private static final String SQL_ALTERADAS = SQL_CARREGAR + " WHERE dt_atualizacao >= ?";
+    
+    private static final String SQL_CONSULTAR = "SELECT adimplente FROM unidade_adimplencia WHERE unidade_id = ?";
+    
+    /**
+     * O now() gravado é o início da transação, que pode terminar depois da
+     * leitura seguinte; cada releitura volta esse intervalo para não perdê-la.
+     */
+    private static final Duration SOBREPOSICAO = Duration.ofSeconds(30);
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final UnidadeRepository unidadeRepository;
+    
+    @Value("${cnd.adimplencia.max-defasagem-segundos}")
+    private long maxDefasagemSegundos;
+    
+    private volatile IndiceAdimplencia indice = new IndiceAdimplencia();
+    
+    /** Hora do banco no início da última leitura; as alterações são relidas a partir dela. */
+    private volatile Timestamp ultimaLeitura;
+    
+    private volatile long ultimaAtualizacaoMs;
+    
+    public boolean isAdimplente(Long unidadeId) {
+        if (System.currentTimeMillis() - ultimaAtualizacaoMs <= maxDefasagemSegundos * 1000) {
+            Adimplencia situacao = indice.consultar(unidadeId);
+            if (situacao != Adimplencia.DESCONHECIDA) {
+                return situacao == Adimplencia.ADIMPLENTE;
+            }
+        }
+        
+        // Índice defasado ou unidade ainda não materializada
+        List<Boolean> materializada = jdbcTemplate.queryForList(SQL_CONSULTAR, Boolean.class, unidadeId);
+        if (!materializada.isEmpty()) {
+            return materializada.get(0);
+        }
+        log.debug("Unidade {} sem situação materializada; apurando pela regra", unidadeId);
+        return unidadeRepository.isUnidadeAdimplente(unidadeId);
+    }
+    
+    @EventListener
+    public void registrar(AdimplenciaAlterada evento) {
+        jdbcTemplate.update(SQL_GRAVAR, evento.unidadeId(), evento.adimplente());
+        indice.atualizar(evento.unidadeId(), evento.adimplente());
+    }
+    
+    /**
+     * Materializa as unidades que ainda não têm situação e recarrega o índice.
+     * Não reapura as existentes: uma unidade marcada inadimplente por evento
+     * continua inadimplente.
+     */
+    @Scheduled(cron = "${cnd.adimplencia.reconstrucao-cron}")
+    public synchronized void reconstruir() {
+        int inseridas = jdbcTemplate.update(SQL_RECONSTRUIR);
+        carregar(inseridas);
+    }
+    
+    private void carregar(int inseridas) {
+        long inicio = System.currentTimeMillis();
+        Timestamp leitura = horaBanco();
+        IndiceAdimplencia novo = new IndiceAdimplencia();
+        jdbcTemplate.query(SQL_CARREGAR, rs -> {
+            novo.atualizar(rs.getLong("unidade_id"), rs.getBoolean("adimplente"));
+        });
+        // Eventos registrados durante a carga entram na próxima releitura
+        indice = novo;
+        ultimaLeitura = leitura;
+        ultimaAtualizacaoMs = System.currentTimeMillis();
+        log.info("Índice de adimplência carregado: {} unidades ({} novas) em {} ms",
+            novo.tamanho(), inseridas, System.currentTimeMillis() - inicio);
+    }
+    
+    /**
+     * Aplica ao índice as situações alteradas (por eventos em qualquer nó)
+     * desde a última leitura. A primeira execução, na subida, só carrega a
+     * tabela no índice, sem gravar; enquanto ela não termina, as consultas
+     * leem a tabela.
+     */
+    @Scheduled(fixedDelayString = "${cnd.adimplencia.atualizacao-ms}")
+    public synchronized void atualizar() {
+        try {
+            if (ultimaLeitura == null) {
+                carregar(0);
+                return;
+            }
+            Timestamp leitura = horaBanco();
+            IndiceAdimplencia atual = indice;
+            jdbcTemplate.query(SQL_ALTERADAS, rs -> {
+                atual.atualizar(rs.getLong("unidade_id"), rs.getBoolean("adimplente"));
+            }, Timestamp.from(ultimaLeitura.toInstant().minus(SOBREPOSICAO)));
+            ultimaLeitura = leitura;
+            ultimaAtualizacaoMs = System.currentTimeMillis();
+        } catch (Exception e) {
+            log.warn("Erro ao atualizar o índice de adimplência: {}", e.getMessage());
+        }
+    }
+    
+    private Timestamp horaBanco() {
+        return jdbcTemplate.queryForObject("SELECT localtimestamp", Timestamp.class);
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.llz.cnd.adimplencia;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Situação de adimplência por id de unidade em dois bitmaps: um bit indica se
+ * a unidade é conhecida e outro se está adimplente. Os ids são sequenciais,
+ * então um milhão de unidades ocupa 256 KB. A leitura é lock-free; as
+ * escritas são serializadas e crescem os bitmaps copiando-os.
+ */
+final class IndiceAdimplencia {
+    
+    private static final int PALAVRAS_INICIAIS = 64;
+    
+    private volatile Bitmaps bitmaps = new Bitmaps(PALAVRAS_INICIAIS);
+    private int conhecidas;
+    
+    Adimplencia consultar(long unidadeId) {
+        Bitmaps atual = bitmaps;
+        long palavra = unidadeId >>> 6;
+        if (unidadeId < 0 || palavra >= atual.tamanho()) {
+            return Adimplencia.DESCONHECIDA;
+        }
+        long bit = 1L << unidadeId;
+        // Ordem inversa à da escrita: conhecida primeiro, depois a situação
+        if ((atual.conhecidas.get((int) palavra) & bit) == 0) {
+            return Adimplencia.DESCONHECIDA;
+        }
+        return (atual.adimplentes.get((int) palavra) & bit) != 0 ? Adimplencia.ADIMPLENTE : Adimplencia.INADIMPLENTE;
+    }
+    
+    synchronized void atualizar(long unidadeId, boolean adimplente) {
+        if (unidadeId < 0 || (unidadeId >>> 6) >= Integer.MAX_VALUE) {
+            return;
+        }
+        int palavra = (int) (unidadeId >>> 6);
+        Bitmaps atual = bitmaps;
+        if (palavra >= atual.tamanho()) {
+            atual = atual.crescer(palavra + 1);
+            bitmaps = atual;
+        }
+        
+        long bit = 1L << unidadeId;
+        long situacao = atual.adimplentes.get(palavra);
+        atual.adimplentes.set(palavra, adimplente ? situacao | bit : situacao & ~bit);
+        long conhecida = atual.conhecidas.get(palavra);
+        if ((conhecida & bit) == 0) {
+            atual.conhecidas.set(palavra, conhecida | bit);
+            conhecidas++;
+        }
+    }
+    
+    synchronized int tamanho() {
+        return conhecidas;
+    }
+    
+    private record Bitmaps(AtomicLongArray conhecidas, AtomicLongArray adimplentes) {
+        
+        Bitmaps(int palavras) {
+            this(new AtomicLongArray(palavras), new AtomicLongArray(palavras));
+        }
+        
+        int tamanho() {
+            return conhecidas.length();
+        }
+        
+        Bitmaps crescer(int minimo) {
+            int palavras = (int) Math.min(Math.max((long) minimo, 2L * tamanho()), Integer.MAX_VALUE);
+            Bitmaps maior = new Bitmaps(palavras);
+            for (int i = 0; i < tamanho(); i++) {
+                maior.conhecidas.set(i, conhecidas.get(i));
+                maior.adimplentes.set(i, adimplentes.get(i));
+            }
+            return maior;
+        }
+    }
+}
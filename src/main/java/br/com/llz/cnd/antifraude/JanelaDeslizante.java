@@ -0,0 +1,196 @@
+package br.com.llz.cnd.antifraude;
+
+import java.util.Arrays;
+
+/**
+ * Contadores em janela deslizante por chave {@code long}, divididos em
+ * listras independentes para reduzir contenção. Cada listra é uma tabela de
+ * endereçamento aberto em arrays primitivos: a chave, o último intervalo
+ * (bucket) em que foi usada e um anel com a contagem de cada bucket da janela.
+ * Chaves sem tentativas dentro da janela são descartadas quando a listra
+ * precisa crescer.
+ */
+final class JanelaDeslizante {
+    
+    private static final int LISTRAS = 64;
+    private static final int CAPACIDADE_INICIAL = 64;
+    
+    private final long duracaoBucketMs;
+    private final int buckets;
+    private final Listra[] listras = new Listra[LISTRAS];
+    
+    JanelaDeslizante(long duracaoJanelaMs, int buckets) {
+        this.duracaoBucketMs = duracaoJanelaMs / buckets;
+        this.buckets = buckets;
+        for (int i = 0; i < LISTRAS; i++) {
+            listras[i] = new Listra(CAPACIDADE_INICIAL);
+        }
+    }
+    
+    boolean tentar(long chave, int limite, long agoraMs) {
+        long hash = misturar(chave);
+        Listra listra = listras[(int) (hash >>> 58)];
+        long bucket = agoraMs / duracaoBucketMs;
+        synchronized (listra) {
+            return listra.tentar(chave, hash, limite, bucket);
+        }
+    }
+    
+    void devolver(long chave, long agoraMs) {
+        long hash = misturar(chave);
+        Listra listra = listras[(int) (hash >>> 58)];
+        long bucket = agoraMs / duracaoBucketMs;
+        synchronized (listra) {
+            listra.devolver(chave, hash, bucket);
+        }
+    }
+    
+    int tamanho() {
+        int total = 0;
+        for (Listra listra : listras) {
+            synchronized (listra) {
+                total += listra.tamanho;
+            }
+        }
+        return total;
+    }
+    
+    /** Espalhamento da chave; os 6 bits altos escolhem a listra e os baixos, o slot inicial. */
+    static long misturar(long chave) {
+        // Finalizador do MurmurHash3: espalha bits para o índice da listra e da tabela
+        chave ^= chave >>> 33;
+        chave *= 0xff51afd7ed558ccdL;
+        chave ^= chave >>> 33;
+        chave *= 0xc4ceb9fe1a85ec53L;
+        chave ^= chave >>> 33;
+        return chave;
+    }
+    
+    private final class Listra {
+        
+        private long[] chaves;
+        private boolean[] ocupados;
+        private long[] ultimoBucket;
+        private int[] contagens;
+        private int tamanho;
+        
+        Listra(int capacidade) {
+            alocar(capacidade);
+        }
+        
+        boolean tentar(long chave, long hash, int limite, long bucket) {
+            int slot = localizar(chave, hash);
+            if (!ocupados[slot]) {
+                if ((tamanho + 1) * 4 > chaves.length * 3) {
+                    redimensionar(bucket);
+                    slot = localizar(chave, hash);
+                }
+                ocupados[slot] = true;
+                chaves[slot] = chave;
+                ultimoBucket[slot] = bucket;
+                tamanho++;
+            }
+            
+            avancar(slot, bucket);
+            int base = slot * buckets;
+            int total = 0;
+            for (int i = 0; i < buckets; i++) {
+                total += contagens[base + i];
+            }
+            if (total >= limite) {
+                return false;
+            }
+            contagens[base + (int) (bucket % buckets)]++;
+            return true;
+        }
+        
+        /**
+         * Retira uma tentativa do bucket mais recente que tiver alguma: se o
+         * bucket virou depois do {@link #tentar}, ela está no anterior.
+         */
+        void devolver(long chave, long hash, long bucket) {
+            int slot = localizar(chave, hash);
+            if (!ocupados[slot]) {
+                return;
+            }
+            avancar(slot, bucket);
+            int base = slot * buckets;
+            for (int i = 0; i < buckets; i++) {
+                int indice = base + (int) ((bucket - i) % buckets);
+                if (contagens[indice] > 0) {
+                    contagens[indice]--;
+                    return;
+                }
+            }
+        }
+        
+        /** Zera os buckets que saíram da janela desde o último uso da chave. */
+        private void avancar(int slot, long bucket) {
+            long decorridos = bucket - ultimoBucket[slot];
+            if (decorridos <= 0) {
+                return;
+            }
+            int base = slot * buckets;
+            if (decorridos >= buckets) {
+                Arrays.fill(contagens, base, base + buckets, 0);
+            } else {
+                for (long b = ultimoBucket[slot] + 1; b <= bucket; b++) {
+                    contagens[base + (int) (b % buckets)] = 0;
+                }
+            }
+            ultimoBucket[slot] = bucket;
+        }
+        
+        private int localizar(long chave, long hash) {
+            int mascara = chaves.length - 1;
+            int slot = (int) hash & mascara;
+            while (ocupados[slot] && chaves[slot] != chave) {
+                slot = (slot + 1) & mascara;
+            }
+            return slot;
+        }
+        
+        /**
+         * Reconstrói a tabela descartando as chaves cuja janela já expirou; só
+         * dobra a capacidade se as chaves ativas ainda ocuparem mais da metade.
+         */
+        private void redimensionar(long bucket) {
+            long[] chavesAntigas = chaves;
+            boolean[] ocupadosAntigos = ocupados;
+            long[] ultimoAntigo = ultimoBucket;
+            int[] contagensAntigas = contagens;
+            
+            int ativas = 0;
+            for (int i = 0; i < chavesAntigas.length; i++) {
+                if (ocupadosAntigos[i] && bucket - ultimoAntigo[i] < buckets) {
+                    ativas++;
+                }
+            }
+            int capacidade = chavesAntigas.length;
+            while ((ativas + 1) * 2 > capacidade) {
+                capacidade *= 2;
+            }
+            
+            alocar(capacidade);
+            for (int i = 0; i < chavesAntigas.length; i++) {
+                if (!ocupadosAntigos[i] || bucket - ultimoAntigo[i] >= buckets) {
+                    continue;
+                }
+                int slot = localizar(chavesAntigas[i], misturar(chavesAntigas[i]));
+                ocupados[slot] = true;
+                chaves[slot] = chavesAntigas[i];
+                ultimoBucket[slot] = ultimoAntigo[i];
+                System.arraycopy(contagensAntigas, i * buckets, contagens, slot * buckets, buckets);
+                tamanho++;
+            }
+        }
+        
+        private void alocar(int capacidade) {
+            chaves = new long[capacidade];
+            ocupados = new boolean[capacidade];
+            ultimoBucket = new long[capacidade];
+            contagens = new int[capacidade * buckets];
+            tamanho = 0;
+        }
+    }
+}
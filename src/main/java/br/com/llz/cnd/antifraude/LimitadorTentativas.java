@@ -0,0 +1,37 @@
+package br.com.llz.cnd.antifraude;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Contagem de tentativas de emissão em janela deslizante de uma hora. A
+ * implementação padrão ({@link LimitadorTentativasLocal}) conta em memória, por
+ * nó; outra implementação pode compartilhar a contagem entre nós.
+ */
+public interface LimitadorTentativas {
+    
+    /**
+     * Registra uma tentativa para a chave, se ainda houver saldo na janela.
+     *
+     * @return false se a chave já atingiu o limite (a tentativa não é contada)
+     */
+    boolean tentar(TipoLimite tipo, long chave, int limite);
+    
+    /**
+     * Desfaz uma tentativa registrada por {@link #tentar}, quando a emissão é
+     * recusada por outro limite e não deve consumir o saldo desta chave.
+     */
+    void devolver(TipoLimite tipo, long chave);
+    
+    /**
+     * Chave de 64 bits (FNV-1a) para um valor textual, como um IP ou a
+     * combinação unidade + parâmetros.
+     */
+    static long chave(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.llz.cnd.antifraude;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LimitadorTentativas} em memória: janela de uma hora em 12 buckets de
+ * 5 minutos, sem acesso ao banco. Em vários nós, cada um limita sozinho; para
+ * um limite global, registre outra implementação e ajuste
+ * {@code cnd.antifraude.backend}.
+ */
+@Component
+@ConditionalOnProperty(name = "cnd.antifraude.backend", havingValue = "local", matchIfMissing = true)
+public class LimitadorTentativasLocal implements LimitadorTentativas {
+    
+    private static final long JANELA_MS = TimeUnit.HOURS.toMillis(1);
+    private static final int BUCKETS = 12;
+    
+    private final Map<TipoLimite, JanelaDeslizante> janelas = new EnumMap<>(TipoLimite.class);
+    
+    public LimitadorTentativasLocal() {
+        for (TipoLimite tipo : TipoLimite.values()) {
+            janelas.put(tipo, new JanelaDeslizante(JANELA_MS, BUCKETS));
+        }
+    }
+    
+    @Override
+    public boolean tentar(TipoLimite tipo, long chave, int limite) {
+        return janelas.get(tipo).tentar(chave, limite, System.currentTimeMillis());
+    }
+    
+    @Override
+    public void devolver(TipoLimite tipo, long chave) {
+        janelas.get(tipo).devolver(chave, System.currentTimeMillis());
+    }
+    
+    /** Quantidade de chaves acompanhadas; exposta como {@code cnd.antifraude.chaves}. */
+    public int chavesAtivas(TipoLimite tipo) {
+        return janelas.get(tipo).tamanho();
+    }
+}
@@ -0,0 +1,8 @@
+package br.com.llz.cnd.antifraude;
+
+public enum TipoLimite {
+    /** Emissões da mesma unidade com os mesmos parâmetros. */
+    PARAMETROS,
+    /** Emissões vindas do mesmo endereço IP, para qualquer unidade. */
+    IP
+}
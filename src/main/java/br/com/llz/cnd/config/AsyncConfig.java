@@ -1,21 +1,27 @@
 package br.com.llz.cnd.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
     
     @Bean(name = "taskExecutor")
+    @ConditionalOnProperty(name = "cnd.threads.virtuais", havingValue = "false", matchIfMissing = true)
     public Executor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
+        // Ao menos uma thread por núcleo para as fatias dos lotes de assinatura
+        int processadores = Runtime.getRuntime().availableProcessors();
+        executor.setCorePoolSize(Math.max(2, processadores));
+        executor.setMaxPoolSize(Math.max(5, processadores));
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("CND-Async-");
         executor.initialize();
@@ -1,6 +1,7 @@
 package br.com.llz.cnd.config;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
@@ -45,7 +46,9 @@ public class CertificadoConfig {
     
     @Bean
     @ConditionalOnProperty(name = "cnd.certificado.path")
-    public PrivateKey cndPrivateKey(KeyStore cndKeyStore) {
+    public PrivateKey cndPrivateKey(ObjectProvider<KeyStore> keyStoreProvider) {
+        // Sem certificado o bean do KeyStore é nulo
+        KeyStore cndKeyStore = keyStoreProvider.getIfAvailable();
         if (cndKeyStore == null) {
             return null;
         }
@@ -0,0 +1,124 @@
+package br.com.llz.cnd.config;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limita quantas conexões ao banco ficam em uso ao mesmo tempo. A permissão é
+ * tomada ao obter a conexão e devolvida no close, então só cobre as fases que
+ * usam o banco: renderização, assinatura e envio de downloads e ZIPs ficam de
+ * fora. Com threads virtuais não há fila do Tomcat segurando a carga; o excesso
+ * espera por uma permissão e, passado o tempo limite, a requisição recebe 503.
+ */
+public class PermissoesBancoDataSource extends DelegatingDataSource {
+    
+    private final Semaphore permissoes;
+    private final long esperaMs;
+    
+    public PermissoesBancoDataSource(DataSource dataSource, int permissoes, long esperaMs) {
+        super(dataSource);
+        this.permissoes = new Semaphore(permissoes);
+        this.esperaMs = esperaMs;
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        adquirir();
+        try {
+            return liberarNoClose(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        adquirir();
+        try {
+            return liberarNoClose(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Todas as permissões em uso ou requisições já esperando por uma: com o
+     * limite ativo, a fila fica aqui e não no pool de conexões.
+     */
+    public boolean disputado() {
+        return permissoes.availablePermits() == 0 || permissoes.hasQueuedThreads();
+    }
+    
+    private void adquirir() throws SQLException {
+        boolean adquiriu;
+        try {
+            adquiriu = permissoes.tryAcquire(esperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            adquiriu = false;
+        }
+        if (!adquiriu) {
+            throw new BancoSobrecarregadoException(esperaMs);
+        }
+    }
+    
+    /** Conexão que devolve a permissão no primeiro close (chamadas repetidas não liberam de novo). */
+    private Connection liberarNoClose(Connection conexao) {
+        AtomicBoolean fechada = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+            new Class<?>[]{ConnectionProxy.class}, (proxy, metodo, args) -> {
+                switch (metodo.getName()) {
+                    case "getTargetConnection":
+                        return conexao;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "close":
+                        if (fechada.compareAndSet(false, true)) {
+                            try {
+                                conexao.close();
+                            } finally {
+                                permissoes.release();
+                            }
+                        }
+                        return null;
+                    case "isClosed":
+                        return fechada.get() || conexao.isClosed();
+                    default:
+                        try {
+                            return metodo.invoke(conexao, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                }
+            });
+    }
+    
+    /**
+     * Sem permissão dentro do tempo limite. Chega ao controller encapsulada
+     * pelo Spring e pelo Hibernate; o {@code @ResponseStatus} é encontrado na
+     * cadeia de causas e a resposta é 503.
+     */
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Servidor sobrecarregado, tente novamente")
+    public static class BancoSobrecarregadoException extends SQLTransientConnectionException {
+        
+        BancoSobrecarregadoException(long esperaMs) {
+            super("Nenhuma permissão de banco disponível em " + esperaMs + " ms");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.llz.cnd.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Modo opcional com threads virtuais (Java 21+) para o Tomcat e para o taskExecutor.
+ * O projeto compila para Java 17, então a API de threads virtuais é acessada por reflexão.
+ * Em vez de fila limitada, a concorrência é controlada por permissões: CPU para as
+ * tarefas do taskExecutor e banco de dados para as conexões em uso.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cnd.threads.virtuais", havingValue = "true")
+@Slf4j
+public class ThreadsVirtuaisConfig {
+    
+    @Value("${cnd.threads.permissoes-cpu:0}")
+    private int permissoesCpu;
+    
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> tomcatThreadsVirtuais() {
+        ExecutorService executor = criarExecutorVirtual("tomcat-virtual-");
+        log.info("Tomcat configurado com threads virtuais");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+    
+    @Bean(name = "taskExecutor")
+    public Executor taskExecutor() {
+        int permissoes = permissoesCpu > 0 ? permissoesCpu : Runtime.getRuntime().availableProcessors();
+        Semaphore cpu = new Semaphore(permissoes);
+        ExecutorService virtual = criarExecutorVirtual("CND-Async-");
+        log.info("taskExecutor com threads virtuais e {} permissões de CPU", permissoes);
+        
+        // A tarefa espera pela permissão já na thread virtual (sem prender thread de plataforma)
+        return new TaskExecutorAdapter(tarefa -> virtual.execute(() -> {
+            cpu.acquireUninterruptibly();
+            try {
+                tarefa.run();
+            } finally {
+                cpu.release();
+            }
+        }));
+    }
+    
+    /** Permissões de banco no DataSource: cada conexão em uso ocupa uma até o close. */
+    @Bean
+    public static BeanPostProcessor permissoesBanco(@Value("${cnd.threads.permissoes-db}") int permissoesDb,
+                                                    @Value("${cnd.threads.espera-db-ms}") long esperaDbMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof PermissoesBancoDataSource)) {
+                    log.info("DataSource {} limitado a {} conexões em uso", beanName, permissoesDb);
+                    return new PermissoesBancoDataSource(dataSource, permissoesDb, esperaDbMs);
+                }
+                return bean;
+            }
+        };
+    }
+    
+    private static ExecutorService criarExecutorVirtual(String prefixo) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, prefixo, 0L);
+            ThreadFactory factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                .getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cnd.threads.virtuais=true requer Java 21 ou superior (atual: "
+                + Runtime.version() + ")", e);
+        }
+    }
+}
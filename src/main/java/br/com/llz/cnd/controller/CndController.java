@@ -1,18 +1,42 @@
 package br.com.llz.cnd.controller;
 
 import br.com.llz.cnd.dto.CndValidacaoResponse;
+import br.com.llz.cnd.dto.DocumentoCnd;
+import br.com.llz.cnd.dto.EmissaoLoteRequest;
+import br.com.llz.cnd.dto.EmissaoLoteResponse;
 import br.com.llz.cnd.dto.UnidadeCndPdfResponse;
 import br.com.llz.cnd.dto.UnidadeCndRequest;
+import br.com.llz.cnd.dto.ValidacaoHashRequest;
+import br.com.llz.cnd.dto.ValidacaoHashResponse;
+import br.com.llz.cnd.service.EmissaoLoteService;
 import br.com.llz.cnd.service.UnidadeService;
+import br.com.llz.cnd.storage.ArquivoFrio;
+import br.com.llz.cnd.storage.DocumentoStore;
+import br.com.llz.cnd.util.IpUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/cnd")
@@ -20,7 +44,15 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "CND - Certidão Negativa de Débitos", description = "APIs para emissão e validação de CND")
 public class CndController {
     
+    private static final String SENDFILE_SUPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARQUIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIM = "org.apache.tomcat.sendfile.end";
+    
     private final UnidadeService unidadeService;
+    private final EmissaoLoteService emissaoLoteService;
+    private final DocumentoStore documentoStore;
+    private final ArquivoFrio arquivoFrio;
     
     @Operation(summary = "Emitir CND em PDF com Assinatura Digital",
                description = "Emite uma Certidão Negativa de Débitos em formato PDF com assinatura digital")
@@ -30,11 +62,55 @@ public class CndController {
             @Parameter(description = "Parâmetros da CND") @RequestBody UnidadeCndRequest request,
             HttpServletRequest httpRequest) {
         
-        String ip = getClientIpAddress(httpRequest);
+        String ip = IpUtil.getClientIpAddress(httpRequest);
         UnidadeCndPdfResponse response = unidadeService.emitirCndPdf(unidadeId, request, ip);
         return ResponseEntity.ok(response);
     }
     
+    @Operation(summary = "Emitir CNDs em Lote",
+               description = "Emite as CNDs de todas as unidades de um condomínio ou de uma lista de unidades. " +
+                             "Processamento assíncrono: acompanhe pelo jobId retornado")
+    @PostMapping("/emitir-lote")
+    public ResponseEntity<EmissaoLoteResponse> emitirLote(
+            @Parameter(description = "Condomínio ou unidades e parâmetros da CND") @RequestBody EmissaoLoteRequest request,
+            HttpServletRequest httpRequest) {
+        
+        String ip = IpUtil.getClientIpAddress(httpRequest);
+        EmissaoLoteResponse response = emissaoLoteService.iniciar(request, ip);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+    
+    @Operation(summary = "Consultar Emissão em Lote",
+               description = "Progresso e resultado por unidade de uma emissão em lote")
+    @GetMapping("/lote/{jobId}")
+    public ResponseEntity<EmissaoLoteResponse> consultarLote(
+            @Parameter(description = "ID da emissão em lote") @PathVariable String jobId) {
+        
+        return ResponseEntity.of(emissaoLoteService.consultar(jobId));
+    }
+    
+    @Operation(summary = "Download da Emissão em Lote",
+               description = "ZIP com os PDFs das CNDs de uma emissão em lote concluída")
+    @GetMapping("/lote/{jobId}/zip")
+    public ResponseEntity<StreamingResponseBody> downloadLote(
+            @Parameter(description = "ID da emissão em lote") @PathVariable String jobId) {
+        
+        Optional<EmissaoLoteResponse> lote = emissaoLoteService.consultar(jobId);
+        if (lote.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!"CONCLUIDO".equals(lote.get().getStatus())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        
+        StreamingResponseBody zip = saida -> emissaoLoteService.escreverZip(jobId, saida);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("cnds-" + jobId + ".zip").build().toString())
+            .body(zip);
+    }
+    
     @Operation(summary = "Validar CND por Código",
                description = "Valida uma CND através do código de validação")
     @GetMapping("/validar/{codigo}")
@@ -46,21 +122,66 @@ public class CndController {
     }
     
     @Operation(summary = "Download da CND Assinada",
-               description = "Faz o download do PDF da CND assinada")
+               description = "Faz o download do PDF da CND assinada. Suporta ETag/If-None-Match e Range")
     @GetMapping("/download/{codigo}")
-    public ResponseEntity<byte[]> downloadCnd(
-            @Parameter(description = "Código de validação da CND") @PathVariable String codigo) {
+    public void downloadCnd(
+            @Parameter(description = "Código de validação da CND") @PathVariable String codigo,
+            ServletWebRequest webRequest) {
         
-        byte[] pdf = unidadeService.downloadCnd(codigo);
+        DocumentoCnd documento = unidadeService.localizarDocumentoCnd(codigo);
+        HttpServletRequest request = webRequest.getRequest();
+        HttpServletResponse response = webRequest.getResponse();
         
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_PDF);
-        headers.setContentDispositionFormData("attachment", "cnd-" + codigo + ".pdf");
-        headers.setContentLength(pdf.length);
+        // O ETag é o hash do conteúdo: downloads repetidos só revalidam e recebem 304
+        String etag = "\"" + documento.getHash() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePublic().getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (webRequest.checkNotModified(etag)) {
+            return;
+        }
         
-        return ResponseEntity.ok()
-            .headers(headers)
-            .body(pdf);
+        long tamanho = documento.getTamanho();
+        long inicio = 0;
+        long fim = tamanho - 1;
+        
+        HttpRange range = lerRange(request, etag);
+        if (range != null) {
+            inicio = range.getRangeStart(tamanho);
+            fim = range.getRangeEnd(tamanho);
+            if (inicio >= tamanho || inicio > fim) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamanho);
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fim + "/" + tamanho);
+        }
+        
+        long quantidade = fim - inicio + 1;
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename("cnd-" + codigo + ".pdf").build().toString());
+        response.setContentLengthLong(quantidade);
+        
+        // Com o documento em disco, o Tomcat envia o arquivo direto do kernel (sendfile)
+        Optional<Path> arquivo = documento.isArquivado() ? Optional.empty() : documentoStore.arquivo(documento.getHash());
+        if (arquivo.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPORTADO))) {
+            request.setAttribute(SENDFILE_ARQUIVO, arquivo.get().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIM, inicio + quantidade);
+            return;
+        }
+        
+        try {
+            WritableByteChannel saida = Channels.newChannel(response.getOutputStream());
+            if (documento.isArquivado()) {
+                arquivoFrio.transferir(documento.getHash(), inicio, quantidade, saida);
+            } else {
+                documentoStore.transferir(documento.getHash(), inicio, quantidade, saida);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao enviar documento " + codigo, e);
+        }
     }
     
     @Operation(summary = "Validar Hash do Documento",
@@ -70,28 +191,38 @@ public class CndController {
             @Parameter(description = "Código de validação da CND") @PathVariable String codigo,
             @Parameter(description = "Hash para validação") @RequestBody String hash) {
         
-        try {
-            byte[] documento = unidadeService.downloadCnd(codigo);
-            String hashCalculado = org.apache.commons.codec.digest.DigestUtils.sha256Hex(documento);
-            boolean valido = hashCalculado.equals(hash.trim());
-            
-            return ResponseEntity.ok(valido);
-        } catch (Exception e) {
-            return ResponseEntity.ok(false);
-        }
+        return ResponseEntity.ok(unidadeService.validarHash(codigo, hash));
     }
     
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
+    @Operation(summary = "Validar Hashes em Lote",
+               description = "Valida vários pares código/hash em uma chamada (auditoria)")
+    @PostMapping("/validar-hash")
+    public ResponseEntity<List<ValidacaoHashResponse>> validarHashes(
+            @Parameter(description = "Códigos de validação e hashes") @RequestBody List<ValidacaoHashRequest> itens) {
         
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+        return ResponseEntity.ok(unidadeService.validarHashes(itens));
+    }
+    
+    /**
+     * Range de bytes pedido, se houver um único intervalo válido e o If-Range
+     * (quando presente) corresponder ao documento atual. Nos demais casos o
+     * documento é enviado inteiro.
+     */
+    private HttpRange lerRange(HttpServletRequest request, String etag) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
         }
         
-        return request.getRemoteAddr();
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
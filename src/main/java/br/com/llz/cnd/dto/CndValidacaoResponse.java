@@ -13,6 +13,7 @@ public class CndValidacaoResponse {
     private String status;
     private LocalDateTime dataEmissao;
     private LocalDateTime dataAssinatura;
+    private LocalDateTime dataExpiracao;
     private String nomeCondominio;
     private String unidadeCodigo;
     private String bloco;
@@ -0,0 +1,14 @@
+package br.com.llz.cnd.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class DocumentoCnd {
+    private String hash;
+    private long tamanho;
+    private boolean assinado;
+    // O documento está no ArquivoFrio, não no DocumentoStore
+    private boolean arquivado;
+}
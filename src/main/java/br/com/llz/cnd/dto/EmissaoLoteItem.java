@@ -0,0 +1,15 @@
+package br.com.llz.cnd.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class EmissaoLoteItem {
+    private Long unidadeId;
+    private String unidadeCodigo;
+    private String bloco;
+    private String codigoValidacao;
+    private String status;
+    private String erro;
+}
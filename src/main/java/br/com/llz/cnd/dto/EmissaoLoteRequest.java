@@ -0,0 +1,17 @@
+package br.com.llz.cnd.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Emissão em lote: informe o condomínio (todas as unidades ativas) ou a
+ * lista de unidades.
+ */
+@Data
+public class EmissaoLoteRequest {
+    private Long condominioId;
+    private List<Long> unidadeIds;
+    private Boolean comAssinatura = false;
+    private Boolean comPeriodo = false;
+    private String canalEmissao = "WEB";
+}
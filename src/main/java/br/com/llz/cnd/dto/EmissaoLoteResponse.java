@@ -0,0 +1,21 @@
+package br.com.llz.cnd.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class EmissaoLoteResponse {
+    private String jobId;
+    private String status;
+    private int total;
+    private int processadas;
+    private int reaproveitadas;
+    private int comErro;
+    private LocalDateTime dataInicio;
+    private LocalDateTime dataFim;
+    private String urlDownload;
+    private List<EmissaoLoteItem> itens;
+}
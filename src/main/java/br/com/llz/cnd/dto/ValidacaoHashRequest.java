@@ -0,0 +1,9 @@
+package br.com.llz.cnd.dto;
+
+import lombok.Data;
+
+@Data
+public class ValidacaoHashRequest {
+    private String codigoValidacao;
+    private String hash;
+}
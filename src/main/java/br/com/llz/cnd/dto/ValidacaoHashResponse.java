@@ -0,0 +1,11 @@
+package br.com.llz.cnd.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ValidacaoHashResponse {
+    private String codigoValidacao;
+    private boolean valido;
+}
@@ -2,6 +2,7 @@ package br.com.llz.cnd.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
@@ -34,13 +35,22 @@ public class UnidadeCnd {
     @Column(name = "canal_emissao", nullable = false)
     private String canalEmissao;
     
-    @JdbcTypeCode(SqlTypes.VARBINARY)
-    @Column(name = "documento_pdf")
-    private byte[] documentoPdf;
+    // Os PDFs ficam no DocumentoStore; a linha guarda apenas o hash (chave) e o tamanho
+    @Column(name = "hash_documento_pdf", length = 64)
+    private String hashDocumentoPdf;
     
-    @JdbcTypeCode(SqlTypes.VARBINARY)
-    @Column(name = "documento_assinado")
-    private byte[] documentoAssinado;
+    @Column(name = "tamanho_documento_pdf")
+    private Long tamanhoDocumentoPdf;
+    
+    @Column(name = "hash_documento_assinado", length = 64)
+    private String hashDocumentoAssinado;
+    
+    @Column(name = "tamanho_documento_assinado")
+    private Long tamanhoDocumentoAssinado;
+    
+    // Preenchida quando o documento assinado passa para o ArquivoFrio
+    @Column(name = "dt_arquivamento")
+    private LocalDateTime dtArquivamento;
     
     @Column(name = "codigo_plataforma")
     private String codigoPlataforma;
@@ -61,6 +71,16 @@ public class UnidadeCnd {
     @Column(name = "tentativas_emissao")
     private Integer tentativasEmissao = 1;
     
+    @ColumnDefault("0")
+    @Column(name = "tentativas_assinatura", nullable = false)
+    private Integer tentativasAssinatura = 0;
+    
+    @Column(name = "reservado_por")
+    private String reservadoPor;
+    
+    @Column(name = "reservado_ate")
+    private LocalDateTime reservadoAte;
+    
     @Column(name = "ip_origem")
     private String ipOrigem;
     
@@ -0,0 +1,34 @@
+package br.com.llz.cnd.metricas;
+
+import br.com.llz.cnd.antifraude.LimitadorTentativasLocal;
+import br.com.llz.cnd.antifraude.TipoLimite;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Chaves acompanhadas pelo {@link LimitadorTentativasLocal}, por tipo de
+ * limite. Sem o backend local não há o que registrar.
+ */
+@Component
+@RequiredArgsConstructor
+public class AntiFraudeMetricas implements MeterBinder {
+    
+    private final ObjectProvider<LimitadorTentativasLocal> limitadorLocal;
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limitadorLocal.ifAvailable(limitador -> {
+            for (TipoLimite tipo : TipoLimite.values()) {
+                Gauge.builder("cnd.antifraude.chaves", limitador, l -> l.chavesAtivas(tipo))
+                    .tag("tipo", tipo.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.llz.cnd.metricas;
+
+import br.com.llz.cnd.service.CicloVidaCndService;
+import br.com.llz.cnd.service.CicloVidaCndService.Estatisticas;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Contadores do {@link CicloVidaCndService}, lidos a cada coleta.
+ */
+@Component
+@RequiredArgsConstructor
+public class CicloVidaMetricas implements MeterBinder {
+    
+    private final CicloVidaCndService cicloVidaCndService;
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        contador(registry, "cnd.ciclo.vida.execucoes", Estatisticas::execucoes);
+        contador(registry, "cnd.ciclo.vida.expiradas", Estatisticas::expiradas);
+        contador(registry, "cnd.ciclo.vida.originais.descartados", Estatisticas::originaisDescartados);
+        contador(registry, "cnd.ciclo.vida.arquivados", Estatisticas::arquivados);
+        contador(registry, "cnd.ciclo.vida.interrupcoes", Estatisticas::interrupcoes);
+        FunctionCounter.builder("cnd.ciclo.vida.bytes.liberados", cicloVidaCndService,
+                s -> s.estatisticas().bytesLiberados())
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("cnd.ciclo.vida.ultima.duracao", cicloVidaCndService,
+                s -> s.estatisticas().ultimaDuracaoMs())
+            .baseUnit("milliseconds")
+            .register(registry);
+    }
+    
+    private void contador(MeterRegistry registry, String nome,
+                          ToDoubleFunction<Estatisticas> valor) {
+        FunctionCounter.builder(nome, cicloVidaCndService, s -> valor.applyAsDouble(s.estatisticas()))
+            .register(registry);
+    }
+}
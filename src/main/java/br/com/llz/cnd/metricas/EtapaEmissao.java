@@ -0,0 +1,29 @@
+package br.com.llz.cnd.metricas;
+
+/**
+ * Etapas de {@code UnidadeService.emitir}, na ordem em que são executadas.
+ * O nome é a tag {@code etapa} do timer {@code cnd.emissao.etapa}.
+ */
+public enum EtapaEmissao {
+    UNIDADE("unidade"),
+    /** Busca de CND ainda válida com os mesmos parâmetros. */
+    REAPROVEITAMENTO("reaproveitamento"),
+    ADIMPLENCIA("adimplencia"),
+    ANTIFRAUDE("antifraude"),
+    CODIGO("codigo"),
+    DADOS("dados"),
+    PDF("pdf"),
+    ARMAZENAMENTO("armazenamento"),
+    /** Gravação da linha em PROCESSANDO, que entrega a CND à fila de assinatura. */
+    GRAVACAO("gravacao");
+    
+    private final String nome;
+    
+    EtapaEmissao(String nome) {
+        this.nome = nome;
+    }
+    
+    public String getNome() {
+        return nome;
+    }
+}
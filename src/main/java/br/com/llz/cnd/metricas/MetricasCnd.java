@@ -0,0 +1,109 @@
+package br.com.llz.cnd.metricas;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Medidores da emissão e da assinatura, expostos em {@code /actuator/prometheus}.
+ * Todos são criados na inicialização: no caminho da emissão há apenas
+ * {@link System#nanoTime()} e o registro em medidores já existentes, sem
+ * consulta ao registry nem alocação. Os histogramas usam buckets fixos
+ * (percentis calculados no Prometheus, não na aplicação).
+ */
+@Component
+public class MetricasCnd {
+    
+    private static final double KB = 1024;
+    
+    private final Timer[] etapas;
+    private final Counter emissoesNovas;
+    private final Counter emissoesReaproveitadas;
+    private final Timer assinaturaSucesso;
+    private final Timer assinaturaFalha;
+    private final DistributionSummary tamanhoOriginal;
+    private final DistributionSummary tamanhoAssinado;
+    
+    public MetricasCnd(MeterRegistry registry) {
+        EtapaEmissao[] valores = EtapaEmissao.values();
+        etapas = new Timer[valores.length];
+        for (EtapaEmissao etapa : valores) {
+            etapas[etapa.ordinal()] = Timer.builder("cnd.emissao.etapa")
+                .description("Duração de cada etapa da emissão de CND")
+                .tag("etapa", etapa.getNome())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+        }
+        
+        emissoesNovas = contadorEmissoes(registry, "nova");
+        emissoesReaproveitadas = contadorEmissoes(registry, "reaproveitada");
+        assinaturaSucesso = timerAssinatura(registry, "sucesso");
+        assinaturaFalha = timerAssinatura(registry, "falha");
+        tamanhoOriginal = tamanhoDocumento(registry, "original");
+        tamanhoAssinado = tamanhoDocumento(registry, "assinado");
+    }
+    
+    /**
+     * Registra a duração da etapa iniciada em {@code inicio} ({@link System#nanoTime()})
+     * e retorna o instante atual, que é o início da etapa seguinte.
+     */
+    public long registrar(EtapaEmissao etapa, long inicio) {
+        long agora = System.nanoTime();
+        etapas[etapa.ordinal()].record(agora - inicio, TimeUnit.NANOSECONDS);
+        return agora;
+    }
+    
+    public void registrarEmissao(boolean reaproveitada) {
+        (reaproveitada ? emissoesReaproveitadas : emissoesNovas).increment();
+    }
+    
+    public void registrarPdf(long tamanho) {
+        tamanhoOriginal.record(tamanho);
+    }
+    
+    /**
+     * Registra uma tentativa de assinatura iniciada em {@code inicio}
+     * ({@link System#nanoTime()}); {@code tamanho} é o do documento assinado.
+     */
+    public void registrarAssinatura(long inicio, boolean sucesso, long tamanho) {
+        (sucesso ? assinaturaSucesso : assinaturaFalha).record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        if (sucesso) {
+            tamanhoAssinado.record(tamanho);
+        }
+    }
+    
+    private static Counter contadorEmissoes(MeterRegistry registry, String resultado) {
+        return Counter.builder("cnd.emissao")
+            .description("Emissões de CND por resultado")
+            .tag("resultado", resultado)
+            .register(registry);
+    }
+    
+    private static Timer timerAssinatura(MeterRegistry registry, String resultado) {
+        return Timer.builder("cnd.assinatura")
+            .description("Duração da assinatura PAdES de cada CND, incluindo leitura e gravação no store")
+            .tag("resultado", resultado)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(30))
+            .register(registry);
+    }
+    
+    private static DistributionSummary tamanhoDocumento(MeterRegistry registry, String tipo) {
+        return DistributionSummary.builder("cnd.documento.tamanho")
+            .description("Tamanho dos PDFs gerados")
+            .baseUnit("bytes")
+            .tag("tipo", tipo)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(KB)
+            .maximumExpectedValue(10 * KB * KB)
+            .register(registry);
+    }
+}
@@ -0,0 +1,14 @@
+package br.com.llz.cnd.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projeção com as chaves e tamanhos dos documentos de uma CND no DocumentoStore.
+ */
+public record CndDocumentosResumo(
+    String hashDocumentoPdf,
+    Long tamanhoDocumentoPdf,
+    String hashDocumentoAssinado,
+    Long tamanhoDocumentoAssinado,
+    LocalDateTime dtArquivamento) {
+}
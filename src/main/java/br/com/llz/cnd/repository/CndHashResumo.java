@@ -0,0 +1,10 @@
+package br.com.llz.cnd.repository;
+
+/**
+ * Projeção com o hash do documento vigente de uma CND: o assinado, se já
+ * existir, ou o original.
+ */
+public record CndHashResumo(
+    String codigoValidacao,
+    String hashDocumento) {
+}
@@ -0,0 +1,19 @@
+package br.com.llz.cnd.repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Projeção com apenas os campos exibidos na validação de uma CND.
+ */
+public record CndValidacaoResumo(
+    String status,
+    LocalDateTime dtCriacao,
+    LocalDateTime dtAssinatura,
+    LocalDateTime dtExpiracao,
+    String unidadeCodigo,
+    String bloco,
+    String razaoSocial,
+    String hashDocumentoAssinado,
+    Map<String, Object> dadosAssinatura) {
+}
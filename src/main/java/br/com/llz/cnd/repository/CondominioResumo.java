@@ -0,0 +1,15 @@
+package br.com.llz.cnd.repository;
+
+/**
+ * Projeção com os dados do condomínio e do endereço impressos na CND.
+ */
+public record CondominioResumo(
+    Long condominioId,
+    String razaoSocial,
+    String logradouro,
+    String numero,
+    String bairro,
+    String cidade,
+    String uf,
+    String cep) {
+}
@@ -0,0 +1,19 @@
+package br.com.llz.cnd.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Consultas de leitura mais frequentes (validação por QR Code e download),
+ * implementadas direto no EntityManager em {@link UnidadeCndConsultasImpl}.
+ */
+public interface UnidadeCndConsultas {
+    
+    Optional<CndValidacaoResumo> buscarValidacao(String codigoValidacao);
+    
+    Optional<CndDocumentosResumo> buscarDocumentos(String codigoValidacao);
+    
+    /** Hash do documento vigente das CNDs encontradas entre os códigos informados. */
+    List<CndHashResumo> buscarHashes(Collection<String> codigosValidacao);
+}
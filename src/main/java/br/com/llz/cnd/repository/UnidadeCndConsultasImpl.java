@@ -0,0 +1,62 @@
+package br.com.llz.cnd.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Usa o EntityManager diretamente em vez de {@code @Query}: o Spring Data
+ * reprocessa o JPQL de métodos anotados a cada chamada, o que custava mais
+ * memória alocada que a própria consulta.
+ */
+class UnidadeCndConsultasImpl implements UnidadeCndConsultas {
+    
+    // Um único select com unidade e condomínio, trazendo só o que a validação exibe
+    private static final String JPQL_VALIDACAO =
+        "SELECT new br.com.llz.cnd.repository.CndValidacaoResumo(" +
+        "c.status, c.dtCriacao, c.dtAssinatura, c.dtExpiracao, u.codigo, u.bloco, co.razaoSocial, " +
+        "c.hashDocumentoAssinado, c.dadosAssinatura) " +
+        "FROM UnidadeCnd c LEFT JOIN c.unidade u LEFT JOIN u.condominio co " +
+        "WHERE c.codigoValidacao = :codigo";
+    
+    private static final String JPQL_DOCUMENTOS =
+        "SELECT new br.com.llz.cnd.repository.CndDocumentosResumo(" +
+        "c.hashDocumentoPdf, c.tamanhoDocumentoPdf, c.hashDocumentoAssinado, c.tamanhoDocumentoAssinado, c.dtArquivamento) " +
+        "FROM UnidadeCnd c WHERE c.codigoValidacao = :codigo";
+    
+    private static final String JPQL_HASHES =
+        "SELECT new br.com.llz.cnd.repository.CndHashResumo(" +
+        "c.codigoValidacao, COALESCE(c.hashDocumentoAssinado, c.hashDocumentoPdf)) " +
+        "FROM UnidadeCnd c WHERE c.codigoValidacao IN :codigos";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public Optional<CndValidacaoResumo> buscarValidacao(String codigoValidacao) {
+        return entityManager.createQuery(JPQL_VALIDACAO, CndValidacaoResumo.class)
+            .setParameter("codigo", codigoValidacao)
+            .getResultList()
+            .stream()
+            .findFirst();
+    }
+    
+    @Override
+    public Optional<CndDocumentosResumo> buscarDocumentos(String codigoValidacao) {
+        return entityManager.createQuery(JPQL_DOCUMENTOS, CndDocumentosResumo.class)
+            .setParameter("codigo", codigoValidacao)
+            .getResultList()
+            .stream()
+            .findFirst();
+    }
+    
+    @Override
+    public List<CndHashResumo> buscarHashes(Collection<String> codigosValidacao) {
+        return entityManager.createQuery(JPQL_HASHES, CndHashResumo.class)
+            .setParameter("codigos", codigosValidacao)
+            .getResultList();
+    }
+}
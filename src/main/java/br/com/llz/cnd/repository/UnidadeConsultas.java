@@ -0,0 +1,21 @@
+package br.com.llz.cnd.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Consultas das unidades e dos condomínios impressos na CND, em projeções e
+ * em conjunto (uma ida ao banco para centenas de ids), implementadas direto
+ * no EntityManager em {@link UnidadeConsultasImpl}.
+ */
+public interface UnidadeConsultas {
+    
+    /** Unidades ativas entre os ids informados, ordenadas por bloco e código. */
+    List<UnidadeResumo> buscarUnidades(Collection<Long> unidadeIds);
+    
+    /** Unidades ativas do condomínio, ordenadas por bloco e código. */
+    List<UnidadeResumo> buscarUnidadesCondominio(Long condominioId);
+    
+    /** Condomínios com o endereço (join), entre os ids informados. */
+    List<CondominioResumo> buscarCondominios(Collection<Long> condominioIds);
+}
@@ -0,0 +1,46 @@
+package br.com.llz.cnd.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.Collection;
+import java.util.List;
+
+class UnidadeConsultasImpl implements UnidadeConsultas {
+    
+    // Só as colunas impressas, sem carregar as entidades nem as associações lazy
+    private static final String JPQL_UNIDADES =
+        "SELECT new br.com.llz.cnd.repository.UnidadeResumo(u.id, u.codigo, u.bloco, u.condominioId) " +
+        "FROM Unidade u WHERE u.regAtivo = true AND ";
+    
+    private static final String ORDEM = " ORDER BY u.bloco, u.codigo";
+    
+    private static final String JPQL_CONDOMINIOS =
+        "SELECT new br.com.llz.cnd.repository.CondominioResumo(" +
+        "co.id, co.razaoSocial, e.logradouro, e.numero, e.bairro, e.cidade, e.uf, e.cep) " +
+        "FROM Condominio co LEFT JOIN co.endereco e WHERE co.id IN :ids";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<UnidadeResumo> buscarUnidades(Collection<Long> unidadeIds) {
+        return entityManager.createQuery(JPQL_UNIDADES + "u.id IN :ids" + ORDEM, UnidadeResumo.class)
+            .setParameter("ids", unidadeIds)
+            .getResultList();
+    }
+    
+    @Override
+    public List<UnidadeResumo> buscarUnidadesCondominio(Long condominioId) {
+        return entityManager.createQuery(JPQL_UNIDADES + "u.condominioId = :condominioId" + ORDEM, UnidadeResumo.class)
+            .setParameter("condominioId", condominioId)
+            .getResultList();
+    }
+    
+    @Override
+    public List<CondominioResumo> buscarCondominios(Collection<Long> condominioIds) {
+        return entityManager.createQuery(JPQL_CONDOMINIOS, CondominioResumo.class)
+            .setParameter("ids", condominioIds)
+            .getResultList();
+    }
+}
@@ -0,0 +1,23 @@
+package br.com.llz.cnd.repository;
+
+/**
+ * Dados da unidade, do condomínio e do endereço impressos na CND.
+ */
+public record UnidadeDadosResumo(
+    Long unidadeId,
+    String unidadeCodigo,
+    String bloco,
+    String razaoSocial,
+    String logradouro,
+    String numero,
+    String bairro,
+    String cidade,
+    String uf,
+    String cep) {
+    
+    public static UnidadeDadosResumo de(UnidadeResumo unidade, CondominioResumo condominio) {
+        return new UnidadeDadosResumo(unidade.unidadeId(), unidade.codigo(), unidade.bloco(),
+            condominio.razaoSocial(), condominio.logradouro(), condominio.numero(), condominio.bairro(),
+            condominio.cidade(), condominio.uf(), condominio.cep());
+    }
+}
@@ -8,7 +8,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface UnidadeRepository extends JpaRepository<Unidade, Long> {
+public interface UnidadeRepository extends JpaRepository<Unidade, Long>, UnidadeConsultas {
     
     Optional<Unidade> findByIdAndRegAtivoIsTrue(Long id);
     
@@ -0,0 +1,12 @@
+package br.com.llz.cnd.repository;
+
+/**
+ * Projeção com os dados da própria unidade; os do condomínio vêm de
+ * {@link CondominioResumo}.
+ */
+public record UnidadeResumo(
+    Long unidadeId,
+    String codigo,
+    String bloco,
+    Long condominioId) {
+}
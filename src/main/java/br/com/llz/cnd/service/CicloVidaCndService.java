@@ -0,0 +1,283 @@
+package br.com.llz.cnd.service;
+
+import br.com.llz.cnd.config.PermissoesBancoDataSource;
+import br.com.llz.cnd.storage.ArquivoFrio;
+import br.com.llz.cnd.storage.DocumentoNaoEncontradoException;
+import br.com.llz.cnd.storage.DocumentoStore;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ciclo de vida das CNDs, executado em segundo plano:
+ * <ol>
+ * <li>CNDs vencidas deixam de ser ativas e passam a EXPIRADO;</li>
+ * <li>o PDF original sai do {@link DocumentoStore} quando o assinado já
+ * existe há {@code cnd.ciclo-vida.original-retencao-horas};</li>
+ * <li>o assinado de CNDs inativas há {@code cnd.ciclo-vida.arquivamento-dias}
+ * vai para o {@link ArquivoFrio} e sai do {@link DocumentoStore}.</li>
+ * </ol>
+ * Cada etapa percorre a tabela em lotes pela chave ({@code id > último id}),
+ * com pausa entre lotes e limite de linhas por execução, e para quando há
+ * requisições esperando conexão (no pool ou, com threads virtuais, pelas
+ * permissões de banco), para não competir com a emissão.
+ * As etapas são idempotentes: vários nós podem executá-las ao mesmo tempo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CicloVidaCndService {
+    
+    // CNDs em assinatura (lease vigente) ficam para a próxima execução
+    private static final String SQL_EXPIRAR =
+        "UPDATE unidade_cnd c SET reg_ativo = false, status = 'EXPIRADO', dt_alteracao = now() " +
+        "FROM (SELECT id FROM unidade_cnd " +
+        "      WHERE id > ? AND status IN ('ASSINADO', 'PROCESSANDO') AND dt_expiracao < now() " +
+        "      AND (reservado_ate IS NULL OR reservado_ate < now()) " +
+        "      ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) e " +
+        "WHERE c.id = e.id " +
+        "RETURNING c.id, c.codigo_validacao";
+    
+    private static final String SQL_ORIGINAIS =
+        "SELECT id, hash_documento_pdf AS hash, tamanho_documento_pdf AS tamanho FROM unidade_cnd " +
+        "WHERE id > ? AND hash_documento_pdf IS NOT NULL AND hash_documento_assinado IS NOT NULL " +
+        "AND dt_assinatura < now() - ? * INTERVAL '1 hour' " +
+        "ORDER BY id LIMIT ?";
+    
+    private static final String SQL_DESCARTAR_ORIGINAL =
+        "UPDATE unidade_cnd SET hash_documento_pdf = NULL, tamanho_documento_pdf = NULL " +
+        "WHERE id = ? AND hash_documento_pdf = ?";
+    
+    // dt_alteracao é a data em que a CND deixou de ser ativa (vencida ou substituída)
+    private static final String SQL_ARQUIVAVEIS =
+        "SELECT id, hash_documento_assinado AS hash, tamanho_documento_assinado AS tamanho FROM unidade_cnd " +
+        "WHERE id > ? AND NOT reg_ativo AND hash_documento_assinado IS NOT NULL AND dt_arquivamento IS NULL " +
+        "AND dt_alteracao < now() - ? * INTERVAL '1 day' " +
+        "ORDER BY id LIMIT ?";
+    
+    private static final String SQL_ARQUIVAR =
+        "UPDATE unidade_cnd SET dt_arquivamento = now() WHERE id = ? AND dt_arquivamento IS NULL";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final DocumentoStore documentoStore;
+    private final ArquivoFrio arquivoFrio;
+    private final CndValidacaoService cndValidacaoService;
+    private final DataSource dataSource;
+    
+    @Value("${cnd.ciclo-vida.habilitado}")
+    private boolean habilitado;
+    
+    @Value("${cnd.ciclo-vida.lote}")
+    private int tamanhoLote;
+    
+    @Value("${cnd.ciclo-vida.pausa-ms}")
+    private long pausaMs;
+    
+    @Value("${cnd.ciclo-vida.max-por-execucao}")
+    private int maxPorExecucao;
+    
+    @Value("${cnd.ciclo-vida.original-retencao-horas}")
+    private int originalRetencaoHoras;
+    
+    @Value("${cnd.ciclo-vida.arquivamento-dias}")
+    private int arquivamentoDias;
+    
+    private final AtomicLong execucoes = new AtomicLong();
+    private final AtomicLong expiradas = new AtomicLong();
+    private final AtomicLong originaisDescartados = new AtomicLong();
+    private final AtomicLong arquivados = new AtomicLong();
+    private final AtomicLong bytesLiberados = new AtomicLong();
+    private final AtomicLong interrupcoes = new AtomicLong();
+    private final AtomicLong ultimaDuracaoMs = new AtomicLong();
+    
+    @Scheduled(fixedDelayString = "${cnd.ciclo-vida.intervalo-ms}", initialDelayString = "${cnd.ciclo-vida.intervalo-ms}")
+    public void executar() {
+        if (!habilitado) {
+            return;
+        }
+        long inicio = System.currentTimeMillis();
+        try {
+            int expiradasExecucao = varrer(this::expirar);
+            int originaisExecucao = varrer(this::descartarOriginais);
+            int arquivadosExecucao = varrer(this::arquivar);
+            if (expiradasExecucao + originaisExecucao + arquivadosExecucao > 0) {
+                log.info("Ciclo de vida das CNDs: {} expiradas, {} originais descartados, {} arquivadas em {} ms",
+                    expiradasExecucao, originaisExecucao, arquivadosExecucao, System.currentTimeMillis() - inicio);
+            }
+        } catch (Exception e) {
+            log.warn("Erro no ciclo de vida das CNDs: {}", e.getMessage());
+        } finally {
+            execucoes.incrementAndGet();
+            ultimaDuracaoMs.set(System.currentTimeMillis() - inicio);
+        }
+    }
+    
+    public Estatisticas estatisticas() {
+        return new Estatisticas(execucoes.get(), expiradas.get(), originaisDescartados.get(), arquivados.get(),
+            bytesLiberados.get(), interrupcoes.get(), ultimaDuracaoMs.get());
+    }
+    
+    /**
+     * Executa a etapa lote a lote até não haver mais linhas, atingir o limite
+     * da execução ou o pool de conexões ficar disputado. Retorna o total de
+     * linhas alteradas.
+     */
+    private int varrer(Etapa etapa) throws InterruptedException {
+        long ultimoId = 0;
+        int lidas = 0;
+        int alteradas = 0;
+        while (lidas < maxPorExecucao) {
+            if (poolDisputado()) {
+                interrupcoes.incrementAndGet();
+                log.debug("Ciclo de vida interrompido: há requisições esperando conexão");
+                break;
+            }
+            int limite = Math.min(tamanhoLote, maxPorExecucao - lidas);
+            Lote lote = etapa.processar(ultimoId, limite);
+            lidas += lote.lidas();
+            alteradas += lote.alteradas();
+            if (lote.lidas() < limite) {
+                break;
+            }
+            ultimoId = lote.ultimoId();
+            Thread.sleep(pausaMs);
+        }
+        return alteradas;
+    }
+    
+    private Lote expirar(long ultimoId, int limite) {
+        List<Long> ids = new ArrayList<>();
+        List<String> codigos = new ArrayList<>();
+        jdbcTemplate.query(SQL_EXPIRAR, rs -> {
+            ids.add(rs.getLong("id"));
+            codigos.add(rs.getString("codigo_validacao"));
+        }, ultimoId, limite);
+        
+        cndValidacaoService.invalidarCache(codigos);
+        expiradas.addAndGet(ids.size());
+        return new Lote(ids.size(), ids.stream().mapToLong(Long::longValue).max().orElse(ultimoId), ids.size());
+    }
+    
+    /**
+     * O original contém o código de validação da própria CND, então o hash
+     * não é compartilhado com outra linha e pode sair do store.
+     */
+    private Lote descartarOriginais(long ultimoId, int limite) {
+        List<Documento> documentos = jdbcTemplate.query(SQL_ORIGINAIS, (rs, i) -> new Documento(
+            rs.getLong("id"), rs.getString("hash"), rs.getLong("tamanho")), ultimoId, originalRetencaoHoras, limite);
+        
+        // A linha deixa de apontar para o original antes de o arquivo ser removido
+        int[] atualizadas = atualizar(SQL_DESCARTAR_ORIGINAL, documentos, (ps, documento) -> {
+            ps.setLong(1, documento.id());
+            ps.setString(2, documento.hash());
+        });
+        
+        int descartados = 0;
+        for (int i = 0; i < documentos.size(); i++) {
+            if (atualizadas[i] != 0) {
+                documentoStore.remover(documentos.get(i).hash());
+                bytesLiberados.addAndGet(documentos.get(i).tamanho());
+                descartados++;
+            }
+        }
+        originaisDescartados.addAndGet(descartados);
+        return new Lote(documentos.size(), ultimoId(documentos, ultimoId), descartados);
+    }
+    
+    private Lote arquivar(long ultimoId, int limite) {
+        List<Documento> documentos = jdbcTemplate.query(SQL_ARQUIVAVEIS, (rs, i) -> new Documento(
+            rs.getLong("id"), rs.getString("hash"), rs.getLong("tamanho")), ultimoId, arquivamentoDias, limite);
+        
+        List<Documento> copiados = new ArrayList<>(documentos.size());
+        for (Documento documento : documentos) {
+            try {
+                arquivoFrio.arquivar(documento.hash(), documentoStore.lerBytes(documento.hash()));
+                copiados.add(documento);
+            } catch (DocumentoNaoEncontradoException e) {
+                // Execução anterior interrompida entre remover do store e marcar a linha
+                if (arquivoFrio.existe(documento.hash())) {
+                    copiados.add(documento);
+                } else {
+                    log.warn("Documento assinado da CND {} não encontrado para arquivar", documento.id());
+                }
+            }
+        }
+        
+        // Marca as linhas antes de remover do store: o download passa a ler do arquivo frio
+        int[] atualizadas = atualizar(SQL_ARQUIVAR, copiados, (ps, documento) -> ps.setLong(1, documento.id()));
+        
+        int arquivadosLote = 0;
+        for (int i = 0; i < copiados.size(); i++) {
+            if (atualizadas[i] != 0) {
+                documentoStore.remover(copiados.get(i).hash());
+                bytesLiberados.addAndGet(copiados.get(i).tamanho());
+                arquivadosLote++;
+            }
+        }
+        arquivados.addAndGet(arquivadosLote);
+        return new Lote(documentos.size(), ultimoId(documentos, ultimoId), arquivadosLote);
+    }
+    
+    /**
+     * Batch update do lote inteiro; linhas alteradas por outro nó no meio
+     * tempo retornam 0.
+     */
+    private int[] atualizar(String sql, List<Documento> documentos,
+                            ParameterizedPreparedStatementSetter<Documento> parametros) {
+        if (documentos.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(sql, documentos, documentos.size(), parametros)[0];
+    }
+    
+    /** O DataSource pode estar encapsulado (permissões de banco); o pool é obtido pelo unwrap. */
+    private boolean poolDisputado() {
+        try {
+            if (dataSource.isWrapperFor(PermissoesBancoDataSource.class)
+                && dataSource.unwrap(PermissoesBancoDataSource.class).disputado()) {
+                return true;
+            }
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                return pool != null && pool.getThreadsAwaitingConnection() > 0;
+            }
+        } catch (SQLException e) {
+            log.debug("Não foi possível consultar o pool de conexões: {}", e.getMessage());
+        }
+        return false;
+    }
+    
+    private static long ultimoId(List<Documento> documentos, long anterior) {
+        return documentos.isEmpty() ? anterior : documentos.get(documentos.size() - 1).id();
+    }
+    
+    /**
+     * Contadores acumulados desde a subida do nó.
+     */
+    public record Estatisticas(long execucoes, long expiradas, long originaisDescartados, long arquivados,
+                               long bytesLiberados, long interrupcoes, long ultimaDuracaoMs) {
+    }
+    
+    @FunctionalInterface
+    private interface Etapa {
+        Lote processar(long ultimoId, int limite);
+    }
+    
+    private record Lote(int lidas, long ultimoId, int alteradas) {
+    }
+    
+    private record Documento(long id, String hash, long tamanho) {
+    }
+}
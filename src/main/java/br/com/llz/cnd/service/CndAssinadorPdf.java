@@ -0,0 +1,210 @@
+package br.com.llz.cnd.service;
+
+import br.com.llz.cnd.storage.DocumentoGerado;
+import br.com.llz.cnd.storage.SaidaComHash;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import com.itextpdf.signatures.BouncyCastleDigest;
+import com.itextpdf.signatures.DigestAlgorithms;
+import com.itextpdf.signatures.IExternalDigest;
+import com.itextpdf.signatures.IExternalSignature;
+import com.itextpdf.signatures.PdfSigner;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAKey;
+import java.util.Calendar;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Assinatura PAdES (CAdES destacada, em atualização incremental) das CNDs.
+ * A chave, a cadeia de certificados e o provedor são carregados uma única vez
+ * a partir dos beans de {@code CertificadoConfig}; as instâncias de
+ * {@link Signature} são reaproveitadas entre documentos.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CndAssinadorPdf {
+    
+    public static final String ALGORITMO_HASH = DigestAlgorithms.SHA256;
+    private static final String CAMPO_ASSINATURA = "AssinaturaCND";
+    
+    /** Estrutura CMS e atributos assinados, além dos certificados e do valor da assinatura. */
+    private static final int FOLGA_ASSINATURA = 1024;
+    
+    private final ObjectProvider<KeyStore> cndKeyStore;
+    private final ObjectProvider<PrivateKey> cndPrivateKey;
+    
+    @Value("${cnd.certificado.alias}")
+    private String certificadoAlias;
+    
+    @Value("${company.name}")
+    private String companyName;
+    
+    @Value("${company.city}")
+    private String companyCity;
+    
+    private final IExternalDigest digest = new BouncyCastleDigest();
+    private Certificate[] cadeia;
+    private IExternalSignature assinatura;
+    private String certificado;
+    
+    /**
+     * Bytes reservados para o CMS no /Contents. Sem estimativa o iText reserva
+     * 8 KB, gravados em hexadecimal com zeros à direita: 16 KB por documento
+     * que não carregam nada.
+     */
+    private int reservaAssinatura;
+    
+    @PostConstruct
+    public void inicializar() {
+        KeyStore keyStore = cndKeyStore.getIfAvailable();
+        PrivateKey privateKey = cndPrivateKey.getIfAvailable();
+        if (keyStore == null || privateKey == null) {
+            log.warn("Certificado CND indisponível: documentos não serão assinados");
+            return;
+        }
+        
+        try {
+            cadeia = keyStore.getCertificateChain(certificadoAlias);
+            if (cadeia == null || cadeia.length == 0) {
+                log.warn("Cadeia de certificados não encontrada para o alias: {}", certificadoAlias);
+                return;
+            }
+            assinatura = new AssinaturaReutilizavel(privateKey, ALGORITMO_HASH);
+            certificado = ((X509Certificate) cadeia[0]).getSubjectX500Principal().getName();
+            reservaAssinatura = estimarAssinatura(cadeia, privateKey);
+            log.info("Contexto de assinatura carregado: {} (reserva de {} bytes)", certificado, reservaAssinatura);
+        } catch (Exception e) {
+            log.error("Erro ao preparar contexto de assinatura: {}", e.getMessage());
+        }
+    }
+    
+    public boolean isDisponivel() {
+        return assinatura != null;
+    }
+    
+    /** Nome do algoritmo de assinatura, ex.: SHA256withRSA. */
+    public String getAlgoritmo() {
+        return assinatura != null ? assinatura.getHashAlgorithm() + "with" + assinatura.getEncryptionAlgorithm() : null;
+    }
+    
+    /** Subject do certificado do assinante. */
+    public String getCertificado() {
+        return certificado;
+    }
+    
+    /**
+     * Assina o PDF com uma assinatura PAdES invisível, anexada como atualização
+     * incremental: os bytes originais são preservados no início do resultado.
+     * O PdfSigner escreve o documento assinado uma única vez, ao final, e o
+     * hash é calculado nessa mesma escrita.
+     */
+    public DocumentoGerado assinar(byte[] documento) {
+        if (!isDisponivel()) {
+            throw new IllegalStateException("Certificado CND indisponível para assinatura");
+        }
+        
+        try {
+            // Assinatura em hexadecimal mais a atualização incremental (campo, aparência e xref)
+            SaidaComHash saida = new SaidaComHash(documento.length + 2 * reservaAssinatura + 4 * 1024);
+            PdfReader reader = new PdfReader(new ByteArrayInputStream(documento));
+            PdfSigner signer = new PdfSigner(reader, saida, new StampingProperties().useAppendMode());
+            signer.setFieldName(CAMPO_ASSINATURA);
+            signer.setSignDate(Calendar.getInstance());
+            signer.getSignatureAppearance()
+                .setReason("Certidão Negativa de Débitos")
+                .setLocation(companyCity)
+                .setSignatureCreator(companyName);
+            
+            signer.signDetached(digest, assinatura, cadeia, null, null, null, reservaAssinatura,
+                PdfSigner.CryptoStandard.CADES);
+            return saida.concluir();
+            
+        } catch (Exception e) {
+            throw new IllegalStateException("Erro ao assinar documento: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Tamanho do CMS: a cadeia vai inteira no SignedData e o valor da
+     * assinatura tem o tamanho do módulo RSA (ou até ~140 bytes em ECDSA).
+     */
+    private static int estimarAssinatura(Certificate[] cadeia, PrivateKey privateKey)
+            throws CertificateEncodingException {
+        int tamanho = FOLGA_ASSINATURA;
+        for (Certificate certificado : cadeia) {
+            tamanho += certificado.getEncoded().length;
+        }
+        if (privateKey instanceof RSAKey rsa) {
+            tamanho += (rsa.getModulus().bitLength() + 7) / 8;
+        } else {
+            tamanho += 256;
+        }
+        return tamanho;
+    }
+    
+    /**
+     * {@link IExternalSignature} com um pool sem bloqueio de instâncias de
+     * {@link Signature}, evitando a busca do provedor a cada documento. Um pool
+     * (em vez de ThreadLocal) também serve às threads virtuais, que são criadas
+     * por tarefa.
+     */
+    private static class AssinaturaReutilizavel implements IExternalSignature {
+        
+        private final PrivateKey privateKey;
+        private final String hashAlgorithm;
+        private final String encryptionAlgorithm;
+        private final String algoritmo;
+        private final Queue<Signature> signatures = new ConcurrentLinkedQueue<>();
+        
+        AssinaturaReutilizavel(PrivateKey privateKey, String hashAlgorithm) throws GeneralSecurityException {
+            this.privateKey = privateKey;
+            this.hashAlgorithm = DigestAlgorithms.getDigest(DigestAlgorithms.getAllowedDigest(hashAlgorithm));
+            this.encryptionAlgorithm = "EC".equals(privateKey.getAlgorithm()) ? "ECDSA" : privateKey.getAlgorithm();
+            
+            this.algoritmo = this.hashAlgorithm + "with" + this.encryptionAlgorithm;
+            // Valida o algoritmo já na inicialização
+            signatures.add(Signature.getInstance(algoritmo));
+        }
+        
+        @Override
+        public String getHashAlgorithm() {
+            return hashAlgorithm;
+        }
+        
+        @Override
+        public String getEncryptionAlgorithm() {
+            return encryptionAlgorithm;
+        }
+        
+        @Override
+        public byte[] sign(byte[] message) throws GeneralSecurityException {
+            Signature signature = signatures.poll();
+            if (signature == null) {
+                signature = Signature.getInstance(algoritmo);
+            }
+            try {
+                signature.initSign(privateKey);
+                signature.update(message);
+                return signature.sign();
+            } finally {
+                signatures.offer(signature);
+            }
+        }
+    }
+}
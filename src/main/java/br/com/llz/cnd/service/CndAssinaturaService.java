@@ -1,110 +1,219 @@
 package br.com.llz.cnd.service;
 
-import br.com.llz.cnd.entity.UnidadeCnd;
-import br.com.llz.cnd.repository.UnidadeCndRepository;
-import lombok.RequiredArgsConstructor;
+import br.com.llz.cnd.metricas.MetricasCnd;
+import br.com.llz.cnd.storage.DocumentoGerado;
+import br.com.llz.cnd.storage.DocumentoStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.security.KeyStore;
-import java.security.PrivateKey;
-import java.security.Signature;
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
-import java.util.Base64;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class CndAssinaturaService {
     
-    private final UnidadeCndRepository cndRepository;
+    // Reserva um lote com lease: linhas já reservadas por outro nó são puladas (SKIP LOCKED)
+    // e leases vencidos (nó que caiu no meio do lote) voltam a ficar disponíveis
+    static final String SQL_RESERVAR =
+        "UPDATE unidade_cnd c SET reservado_por = ?, " +
+        "reservado_ate = now() + ? * INTERVAL '1 second', " +
+        "tentativas_assinatura = c.tentativas_assinatura + 1 " +
+        "FROM (SELECT id FROM unidade_cnd " +
+        "      WHERE status = 'PROCESSANDO' AND tentativas_assinatura < ? " +
+        "      AND (reservado_ate IS NULL OR reservado_ate < now()) " +
+        "      ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) p " +
+        "WHERE c.id = p.id " +
+        "RETURNING c.id, c.codigo_validacao, c.hash_documento_pdf, c.tentativas_assinatura";
     
-    @Value("${cnd.certificado.path}")
-    private String certificadoPath;
+    // Só grava se o lease ainda é deste nó; falhas voltam para a fila após o intervalo de retry
+    static final String SQL_ATUALIZAR =
+        "UPDATE unidade_cnd SET status = ?, hash_documento_assinado = ?, tamanho_documento_assinado = ?, dt_assinatura = ?, " +
+        "dados_assinatura = CAST(? AS jsonb), dt_alteracao = ?, reservado_por = NULL, " +
+        "reservado_ate = CASE WHEN ? THEN now() + ? * INTERVAL '1 second' END " +
+        "WHERE id = ? AND reservado_por = ?";
     
-    @Value("${cnd.certificado.password}")
-    private String certificadoPassword;
+    // CNDs que esgotaram as tentativas com o lease vencido (ex.: nó caiu durante a assinatura)
+    static final String SQL_ESGOTADAS =
+        "UPDATE unidade_cnd SET status = 'ERRO', reservado_por = NULL, reservado_ate = NULL, dt_alteracao = now() " +
+        "WHERE status = 'PROCESSANDO' AND tentativas_assinatura >= ? " +
+        "AND (reservado_ate IS NULL OR reservado_ate < now())";
     
-    @Value("${cnd.certificado.alias}")
-    private String certificadoAlias;
+    private final JdbcTemplate jdbcTemplate;
+    private final CndAssinadorPdf cndAssinadorPdf;
+    private final DocumentoStore documentoStore;
+    private final CndValidacaoService cndValidacaoService;
+    private final Executor taskExecutor;
+    private final ObjectMapper objectMapper;
+    private final MetricasCnd metricas;
     
-    @Async
-    public void processarAssinaturaAsync(Long cndId) {
-        try {
-            UnidadeCnd cnd = cndRepository.findById(cndId).orElseThrow();
+    @Value("${cnd.assinatura.lote.tamanho}")
+    private int tamanhoLote;
+    
+    @Value("${cnd.assinatura.lote.paralelismo:0}")
+    private int paralelismo;
+    
+    @Value("${cnd.assinatura.lease-segundos}")
+    private int leaseSegundos;
+    
+    @Value("${cnd.assinatura.max-tentativas}")
+    private int maxTentativas;
+    
+    @Value("${cnd.assinatura.retry-segundos}")
+    private int retrySegundos;
+    
+    @Value("${cnd.assinatura.no:}")
+    private String no;
+    
+    public CndAssinaturaService(JdbcTemplate jdbcTemplate, CndAssinadorPdf cndAssinadorPdf, DocumentoStore documentoStore,
+                                CndValidacaoService cndValidacaoService,
+                                @Qualifier("taskExecutor") Executor taskExecutor, ObjectMapper objectMapper,
+                                MetricasCnd metricas) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cndAssinadorPdf = cndAssinadorPdf;
+        this.documentoStore = documentoStore;
+        this.cndValidacaoService = cndValidacaoService;
+        this.taskExecutor = taskExecutor;
+        this.objectMapper = objectMapper;
+        this.metricas = metricas;
+    }
+    
+    @PostConstruct
+    public void inicializar() {
+        if (no == null || no.isBlank()) {
+            no = identificarNo();
+        }
+        log.info("Fila de assinatura iniciada no nó {}", no);
+    }
+    
+    /**
+     * Drena as CNDs em PROCESSANDO em lotes: cada lote é reservado na tabela
+     * unidade_cnd, assinado em paralelo no taskExecutor e gravado com um único
+     * batch update. Vários nós podem drenar a fila ao mesmo tempo.
+     */
+    @Scheduled(fixedDelayString = "${cnd.assinatura.lote.intervalo-ms}")
+    public void processarLotesPendentes() {
+        int esgotadas = jdbcTemplate.update(SQL_ESGOTADAS, maxTentativas);
+        if (esgotadas > 0) {
+            log.warn("{} CNDs marcadas com ERRO após {} tentativas de assinatura", esgotadas, maxTentativas);
+        }
+        
+        List<CndPendente> lote;
+        do {
+            lote = jdbcTemplate.query(SQL_RESERVAR, (rs, i) -> new CndPendente(
+                    rs.getLong("id"), rs.getString("codigo_validacao"), rs.getString("hash_documento_pdf"),
+                    rs.getInt("tentativas_assinatura")),
+                no, leaseSegundos, maxTentativas, tamanhoLote);
+            if (lote.isEmpty()) {
+                return;
+            }
             
-            // Simular assinatura digital (em produção seria integração com plataforma)
-            byte[] documentoAssinado = assinarDocumentoLocal(cnd.getDocumentoPdf());
+            List<ResultadoAssinatura> resultados = assinarEmParalelo(lote);
+            salvarResultados(resultados);
+            cndValidacaoService.invalidarCache(lote.stream().map(CndPendente::codigoValidacao).toList());
             
-            // Calcular hash do documento assinado
-            String hashDocumento = DigestUtils.sha256Hex(documentoAssinado);
+            long assinadas = resultados.stream().filter(r -> r.hashDocumentoAssinado() != null).count();
+            log.info("Lote de assinatura processado no nó {}: {} assinadas, {} com falha", no, assinadas,
+                resultados.size() - assinadas);
+        } while (lote.size() == tamanhoLote);
+    }
+    
+    public DocumentoGerado assinarDocumentoLocal(byte[] documento) {
+        return cndAssinadorPdf.assinar(documento);
+    }
+    
+    private List<ResultadoAssinatura> assinarEmParalelo(List<CndPendente> lote) {
+        // Divide o lote em fatias para não ocupar a fila do executor com uma tarefa por CND
+        int fatias = Math.min(lote.size(), paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+        int tamanhoFatia = (lote.size() + fatias - 1) / fatias;
+        
+        List<CompletableFuture<List<ResultadoAssinatura>>> futuros = new ArrayList<>(fatias);
+        for (int inicio = 0; inicio < lote.size(); inicio += tamanhoFatia) {
+            List<CndPendente> fatia = lote.subList(inicio, Math.min(inicio + tamanhoFatia, lote.size()));
+            futuros.add(CompletableFuture.supplyAsync(
+                () -> fatia.stream().map(this::assinar).toList(), taskExecutor));
+        }
+        
+        List<ResultadoAssinatura> resultados = new ArrayList<>(lote.size());
+        futuros.forEach(futuro -> resultados.addAll(futuro.join()));
+        return resultados;
+    }
+    
+    private ResultadoAssinatura assinar(CndPendente cnd) {
+        long inicio = System.nanoTime();
+        try {
+            // Assinatura PAdES com o certificado da empresa
+            DocumentoGerado documentoAssinado = assinarDocumentoLocal(documentoStore.lerBytes(cnd.hashDocumentoPdf()));
+            
+            // O hash do documento assinado, calculado na escrita, é a própria chave no store
+            String hashDocumento = documentoStore.salvar(documentoAssinado);
             
-            // Dados da assinatura simulada
+            // Dados da assinatura
             Map<String, Object> dadosAssinatura = new HashMap<>();
-            dadosAssinatura.put("algoritmo", "SHA256withRSA");
-            dadosAssinatura.put("certificado", "CN=LLZ Garantidora, OU=TI, O=LLZ");
+            dadosAssinatura.put("algoritmo", cndAssinadorPdf.getAlgoritmo());
+            dadosAssinatura.put("certificado", cndAssinadorPdf.getCertificado());
             dadosAssinatura.put("timestamp", LocalDateTime.now().toString());
             dadosAssinatura.put("hash", hashDocumento);
             
-            // Atualizar registro
-            cnd.setDocumentoAssinado(documentoAssinado);
-            cnd.setStatus("ASSINADO");
-            cnd.setDtAssinatura(LocalDateTime.now());
-            cnd.setDadosAssinatura(dadosAssinatura);
-            
-            cndRepository.save(cnd);
-            
-            log.info("CND {} assinada com sucesso", cnd.getCodigoValidacao());
+            metricas.registrarAssinatura(inicio, true, documentoAssinado.tamanho());
+            return new ResultadoAssinatura(cnd.id(), "ASSINADO", hashDocumento,
+                (long) documentoAssinado.tamanho(), objectMapper.writeValueAsString(dadosAssinatura));
             
         } catch (Exception e) {
-            log.error("Erro ao processar assinatura da CND {}: {}", cndId, e.getMessage());
-            // Marcar como erro
-            UnidadeCnd cnd = cndRepository.findById(cndId).orElse(null);
-            if (cnd != null) {
-                cnd.setStatus("ERRO");
-                cndRepository.save(cnd);
-            }
+            // Volta para a fila enquanto houver tentativas; depois disso, ERRO
+            metricas.registrarAssinatura(inicio, false, 0);
+            boolean esgotou = cnd.tentativas() >= maxTentativas;
+            log.error("Erro ao processar assinatura da CND {} (tentativa {}/{}): {}",
+                cnd.codigoValidacao(), cnd.tentativas(), maxTentativas, e.getMessage());
+            return new ResultadoAssinatura(cnd.id(), esgotou ? "ERRO" : "PROCESSANDO", null, null, null);
         }
     }
     
-    private byte[] assinarDocumentoLocal(byte[] documento) {
+    private void salvarResultados(List<ResultadoAssinatura> resultados) {
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(SQL_ATUALIZAR, resultados, resultados.size(), (ps, resultado) -> {
+            boolean assinado = resultado.hashDocumentoAssinado() != null;
+            ps.setString(1, resultado.status());
+            ps.setString(2, resultado.hashDocumentoAssinado());
+            ps.setObject(3, resultado.tamanhoDocumentoAssinado(), Types.BIGINT);
+            ps.setTimestamp(4, assinado ? agora : null);
+            ps.setString(5, resultado.dadosAssinatura());
+            ps.setTimestamp(6, agora);
+            ps.setBoolean(7, "PROCESSANDO".equals(resultado.status()));
+            ps.setInt(8, retrySegundos);
+            ps.setLong(9, resultado.id());
+            ps.setString(10, no);
+        });
+    }
+    
+    private static String identificarNo() {
+        String host;
         try {
-            // Carregar certificado
-            KeyStore keyStore = KeyStore.getInstance("PKCS12");
-            keyStore.load(getClass().getClassLoader().getResourceAsStream(certificadoPath), 
-                         certificadoPassword.toCharArray());
-            
-            // Obter chave privada
-            PrivateKey privateKey = (PrivateKey) keyStore.getKey(certificadoAlias, 
-                                                                certificadoPassword.toCharArray());
-            
-            // Assinar documento
-            Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(privateKey);
-            signature.update(documento);
-            byte[] assinatura = signature.sign();
-            
-            // Para este MVP, vamos apenas adicionar a assinatura ao final do documento
-            // Em produção, seria usado iText para assinatura PDF adequada
-            byte[] documentoAssinado = new byte[documento.length + assinatura.length];
-            System.arraycopy(documento, 0, documentoAssinado, 0, documento.length);
-            System.arraycopy(assinatura, 0, documentoAssinado, documento.length, assinatura.length);
-            
-            return documentoAssinado;
-            
+            host = InetAddress.getLocalHost().getHostName();
         } catch (Exception e) {
-            log.error("Erro ao assinar documento localmente: {}", e.getMessage());
-            // Em caso de erro, retorna o documento original
-            return documento;
+            host = "desconhecido";
         }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+    
+    private record CndPendente(Long id, String codigoValidacao, String hashDocumentoPdf, int tentativas) {
     }
     
-    public String obterHashDocumento(byte[] documento) {
-        return DigestUtils.sha256Hex(documento);
+    private record ResultadoAssinatura(Long id, String status, String hashDocumentoAssinado,
+                                       Long tamanhoDocumentoAssinado, String dadosAssinatura) {
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,10 @@
 package br.com.llz.cnd.service;
 
 import br.com.llz.cnd.dto.UnidadeCndData;
+import br.com.llz.cnd.storage.DocumentoGerado;
+import br.com.llz.cnd.storage.SaidaComHash;
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.itextpdf.io.font.constants.StandardFonts;
@@ -11,88 +13,96 @@ import com.itextpdf.io.image.ImageDataFactory;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.font.PdfFont;
 import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.layout.Canvas;
 import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Image;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
+import com.itextpdf.layout.renderer.DocumentRenderer;
+import com.itextpdf.layout.renderer.IRenderer;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class CndPdfService {
     
-    @Value("${cnd.url.validacao}")
-    private String urlValidacao;
-    
-    @Value("${company.name}")
-    private String companyName;
-    
-    @Value("${company.address}")
-    private String companyAddress;
-    
-    @Value("${company.neighborhood}")
-    private String companyNeighborhood;
-    
-    @Value("${company.city}")
-    private String companyCity;
-    
-    @Value("${company.state}")
-    private String companyState;
+    private static final DateTimeFormatter FORMATO_EMISSAO = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
     
-    @Value("${company.zipcode}")
-    private String companyZipcode;
+    private final CndPdfTemplate template;
     
-    @Value("${company.phone}")
-    private String companyPhone;
-    
-    @Value("${company.email}")
-    private String companyEmail;
+    @Value("${cnd.url.validacao}")
+    private String urlValidacao;
     
     public byte[] gerarPdf(UnidadeCndData dados, String codigo) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfWriter writer = new PdfWriter(baos);
-            PdfDocument pdf = new PdfDocument(writer);
-            Document document = new Document(pdf);
+        return gerarDocumento(dados, codigo).conteudo();
+    }
+    
+    /**
+     * Gera o PDF da CND com o SHA-256 calculado durante a escrita, pronto para
+     * o {@link br.com.llz.cnd.storage.DocumentoStore}.
+     */
+    public DocumentoGerado gerarDocumento(UnidadeCndData dados, String codigo) {
+        // O documento final tem o tamanho do template mais o conteúdo da unidade
+        try (SaidaComHash saida = new SaidaComHash(template.getConteudo().length + 8 * 1024)) {
+            // Parte do template pré-compilado: logo, título e dados da empresa já estão na página
+            PdfReader reader = new PdfReader(new ByteArrayInputStream(template.getConteudo()));
+            PdfDocument pdf = new PdfDocument(reader, new PdfWriter(saida, CndPdfTemplate.propriedadesEscrita()));
             
             // Fontes
             PdfFont fontRegular = PdfFontFactory.createFont(StandardFonts.HELVETICA);
             PdfFont fontBold = PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD);
             
-            // Header com logo
-            adicionarHeader(document, fontBold);
-            
-            // Código de validação
-            adicionarCodigoValidacao(document, codigo, fontRegular);
-            
-            // Conteúdo principal
-            adicionarConteudo(document, dados, fontRegular, fontBold);
-            
-            // Dados da empresa
-            adicionarDadosEmpresa(document, fontRegular);
-            
-            // QR Code
-            adicionarQrCode(document, codigo);
-            
-            // Hash do documento
-            adicionarHashDocumento(document, fontRegular);
+            try (Document documento = new Document(pdf, CndPdfTemplate.TAMANHO_PAGINA, false)) {
+                // Dados da unidade na área livre do modelo. O que não couber (lista de vencimentos
+                // longa, por exemplo) continua em novas cópias da página modelo, nunca é cortado
+                Rectangle area = template.getAreaConteudo();
+                Rectangle pagina = pdf.getFirstPage().getPageSize();
+                documento.setMargins(pagina.getTop() - area.getTop(), pagina.getRight() - area.getRight(),
+                    area.getBottom(), area.getLeft() - pagina.getLeft());
+                documento.setRenderer(new RendererContinuacao(documento));
+                
+                // Código de validação
+                adicionarCodigoValidacao(documento, codigo, fontRegular);
+                
+                // Conteúdo principal
+                adicionarConteudo(documento, dados, fontRegular, fontBold);
+                
+                // Rodapé em todas as páginas, já criadas pelo layout acima
+                ImageData qrCode = qrCode(codigo);
+                int paginas = pdf.getNumberOfPages();
+                for (int numero = 1; numero <= paginas; numero++) {
+                    try (Canvas rodape = new Canvas(pdf.getPage(numero), pagina)) {
+                        // Data de emissão
+                        adicionarDataEmissao(rodape, fontRegular);
+                        
+                        if (paginas > 1) {
+                            adicionarNumeroPagina(rodape, numero, paginas, fontRegular);
+                        }
+                        
+                        // QR Code
+                        adicionarQrCode(rodape.getPdfCanvas(), qrCode);
+                    }
+                }
+            }
             
-            document.close();
-            return baos.toByteArray();
+            return saida.concluir();
             
         } catch (Exception e) {
             log.error("Erro ao gerar PDF da CND: {}", e.getMessage(), e);
@@ -100,41 +110,17 @@ public class CndPdfService {
         }
     }
     
-    private void adicionarHeader(Document document, PdfFont fontBold) throws IOException {
-        // Logo
-        try {
-            ClassPathResource logoResource = new ClassPathResource("static/llz.png");
-            ImageData logoData = ImageDataFactory.create(logoResource.getURL());
-            Image logo = new Image(logoData);
-            logo.setWidth(150);
-            logo.setHorizontalAlignment(com.itextpdf.layout.properties.HorizontalAlignment.CENTER);
-            document.add(logo);
-        } catch (Exception e) {
-            log.warn("Erro ao carregar logo: {}", e.getMessage());
-        }
-        
-        // Título
-        Paragraph titulo = new Paragraph("CERTIDÃO NEGATIVA DE DÉBITOS")
-            .setFont(fontBold)
-            .setFontSize(20)
-            .setTextAlignment(TextAlignment.CENTER)
-            .setFontColor(ColorConstants.DARK_GRAY)
-            .setMarginTop(20)
-            .setMarginBottom(30);
-        document.add(titulo);
-    }
-    
-    private void adicionarCodigoValidacao(Document document, String codigo, PdfFont fontRegular) {
+    private void adicionarCodigoValidacao(Document documento, String codigo, PdfFont fontRegular) {
         Paragraph codigoP = new Paragraph("Código de Validação: " + codigo)
             .setFont(fontRegular)
             .setFontSize(12)
             .setTextAlignment(TextAlignment.RIGHT)
             .setFontColor(ColorConstants.BLUE)
             .setMarginBottom(20);
-        document.add(codigoP);
+        documento.add(codigoP);
     }
     
-    private void adicionarConteudo(Document document, UnidadeCndData dados, PdfFont fontRegular, PdfFont fontBold) {
+    private void adicionarConteudo(Document documento, UnidadeCndData dados, PdfFont fontRegular, PdfFont fontBold) {
         // Informações da unidade
         Table infoTable = new Table(UnitValue.createPercentArray(new float[]{30, 70}));
         infoTable.setWidth(UnitValue.createPercentValue(100));
@@ -154,7 +140,7 @@ public class CndPdfService {
             String.format("Unidade %s", dados.getUnidadeCodigo());
         infoTable.addCell(new Paragraph(unidadeInfo).setFont(fontRegular));
         
-        document.add(infoTable);
+        documento.add(infoTable);
         
         // Declaração principal
         Paragraph declaracao = new Paragraph()
@@ -168,17 +154,17 @@ public class CndPdfService {
         declaracao.add(new Paragraph("NÃO POSSUI DÉBITOS").setFont(fontBold).setFontColor(ColorConstants.GREEN));
         declaracao.add(" em aberto junto a esta administradora na data de emissão deste documento.");
         
-        document.add(declaracao);
+        documento.add(declaracao);
         
         // Período (se aplicável)
         if (dados.getComPeriodo() && dados.getDataVencimento() != null && !dados.getDataVencimento().isEmpty()) {
             Paragraph periodoTitulo = new Paragraph("Período Verificado:")
                 .setFont(fontBold)
                 .setMarginTop(20);
-            document.add(periodoTitulo);
+            documento.add(periodoTitulo);
             
             for (String data : dados.getDataVencimento()) {
-                document.add(new Paragraph("• " + data).setFont(fontRegular).setMarginLeft(20));
+                documento.add(new Paragraph("• " + data).setFont(fontRegular).setMarginLeft(20));
             }
         }
         
@@ -193,81 +179,95 @@ public class CndPdfService {
         validade.add("Esta certidão é válida até ");
         validade.add(new Paragraph(dados.getValidadeDocumento()).setFont(fontBold));
         
-        document.add(validade);
+        documento.add(validade);
     }
     
-    private void adicionarDadosEmpresa(Document document, PdfFont fontRegular) {
-        Paragraph empresaInfo = new Paragraph()
+    private void adicionarDataEmissao(Canvas canvas, PdfFont fontRegular) {
+        String dataEmissao = LocalDateTime.now().format(FORMATO_EMISSAO);
+        Paragraph emissao = new Paragraph("Documento emitido em: " + dataEmissao)
             .setFont(fontRegular)
             .setFontSize(10)
             .setTextAlignment(TextAlignment.CENTER)
-            .setMarginTop(40)
+            .setFixedPosition(CndPdfTemplate.RODAPE_X, CndPdfTemplate.EMISSAO_Y, CndPdfTemplate.RODAPE_LARGURA)
             .setFontColor(ColorConstants.GRAY);
         
-        empresaInfo.add(companyName + "\n");
-        empresaInfo.add(companyAddress + " - " + companyNeighborhood + "\n");
-        empresaInfo.add(companyCity + "/" + companyState + " - CEP: " + companyZipcode + "\n");
-        empresaInfo.add("Tel: " + companyPhone + " | " + companyEmail);
-        
-        document.add(empresaInfo);
-        
-        // Data de emissão
-        String dataEmissao = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-        Paragraph emissao = new Paragraph("Documento emitido em: " + dataEmissao)
+        canvas.add(emissao);
+    }
+    
+    private void adicionarNumeroPagina(Canvas canvas, int numero, int paginas, PdfFont fontRegular) {
+        Paragraph pagina = new Paragraph("Página " + numero + " de " + paginas)
             .setFont(fontRegular)
-            .setFontSize(10)
+            .setFontSize(8)
             .setTextAlignment(TextAlignment.CENTER)
-            .setMarginTop(10)
+            .setFixedPosition(CndPdfTemplate.QR_X - 10, CndPdfTemplate.NUMERO_PAGINA_Y, 100)
             .setFontColor(ColorConstants.GRAY);
         
-        document.add(emissao);
+        canvas.add(pagina);
     }
     
-    private void adicionarQrCode(Document document, String codigo) {
+    private ImageData qrCode(String codigo) {
         try {
-            String url = urlValidacao + "/" + codigo;
-            BitMatrix matrix = new QRCodeWriter().encode(url, BarcodeFormat.QR_CODE, 100, 100);
-            BufferedImage qrImage = MatrixToImageWriter.toBufferedImage(matrix);
-            
-            ByteArrayOutputStream qrBaos = new ByteArrayOutputStream();
-            ImageIO.write(qrImage, "PNG", qrBaos);
-            
-            ImageData imageData = ImageDataFactory.create(qrBaos.toByteArray());
-            Image qrCode = new Image(imageData);
-            qrCode.setFixedPosition(450, 50);
-            qrCode.setWidth(80);
-            qrCode.setHeight(80);
-            
-            document.add(qrCode);
-            
-            // Texto do QR Code
-            Paragraph qrTexto = new Paragraph("Validar documento")
-                .setFont(PdfFontFactory.createFont(StandardFonts.HELVETICA))
-                .setFontSize(8)
-                .setFixedPosition(440, 35, 100)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setFontColor(ColorConstants.GRAY);
-            
-            document.add(qrTexto);
-            
+            return imagemQrCode(urlValidacao + "/" + codigo);
         } catch (Exception e) {
             log.warn("Erro ao gerar QR Code: {}", e.getMessage());
+            return null;
         }
     }
     
-    private void adicionarHashDocumento(Document document, PdfFont fontRegular) {
-        // Placeholder para hash - será calculado após geração
-        Paragraph hashInfo = new Paragraph("Hash do documento será calculado após assinatura")
-            .setFont(fontRegular)
-            .setFontSize(8)
-            .setTextAlignment(TextAlignment.LEFT)
-            .setFixedPosition(50, 20, 300)
-            .setFontColor(ColorConstants.LIGHT_GRAY);
+    private void adicionarQrCode(PdfCanvas canvas, ImageData qrCode) {
+        if (qrCode != null) {
+            Rectangle area = new Rectangle(CndPdfTemplate.QR_X, CndPdfTemplate.QR_Y,
+                CndPdfTemplate.QR_TAMANHO, CndPdfTemplate.QR_TAMANHO);
+            canvas.addImageFittedIntoRectangle(qrCode, area, true);
+        }
+    }
+    
+    /**
+     * QR Code como imagem inline de 1 bit em DeviceGray (bit 1 = branco), sem
+     * AWT nem PNG intermediário.
+     */
+    public static ImageData imagemQrCode(String conteudo) throws WriterException {
+        // Matriz no tamanho mínimo (1 pixel por módulo, já com a zona de silêncio)
+        BitMatrix matrix = new QRCodeWriter().encode(conteudo, BarcodeFormat.QR_CODE, 0, 0);
         
-        document.add(hashInfo);
+        int largura = matrix.getWidth();
+        int altura = matrix.getHeight();
+        int bytesPorLinha = (largura + 7) / 8;
+        byte[] pixels = new byte[bytesPorLinha * altura];
+        for (int y = 0; y < altura; y++) {
+            for (int x = 0; x < largura; x++) {
+                if (!matrix.get(x, y)) {
+                    pixels[y * bytesPorLinha + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
+        }
+        return ImageDataFactory.create(largura, altura, 1, 1, pixels, null);
     }
     
-    public String calcularHashDocumento(byte[] pdf) {
-        return DigestUtils.sha256Hex(pdf);
+    /**
+     * Layout sobre a página modelo já aberta: a primeira página é a do
+     * template e cada página de continuação é uma nova cópia dele (cabeçalho e
+     * dados da empresa), sem o conteúdo já carimbado na primeira.
+     */
+    private class RendererContinuacao extends DocumentRenderer {
+        
+        RendererContinuacao(Document documento) {
+            super(documento, false);
+        }
+        
+        @Override
+        protected PageSize addNewPage(PageSize customPageSize) {
+            try (PdfDocument modelo = new PdfDocument(new PdfReader(new ByteArrayInputStream(template.getConteudo())))) {
+                modelo.copyPagesTo(1, 1, document.getPdfDocument());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return CndPdfTemplate.TAMANHO_PAGINA;
+        }
+        
+        @Override
+        public IRenderer getNextRenderer() {
+            return new RendererContinuacao(document);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+package br.com.llz.cnd.service;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.properties.HorizontalAlignment;
+import com.itextpdf.layout.properties.TextAlignment;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+/**
+ * Página modelo da CND, montada uma única vez na inicialização com todo o
+ * conteúdo estático (logo, título, dados da empresa e rodapé). Cada emissão
+ * abre uma cópia deste modelo e carimba apenas os campos variáveis.
+ */
+@Component
+@Slf4j
+public class CndPdfTemplate {
+    
+    public static final PageSize TAMANHO_PAGINA = PageSize.A4;
+    public static final float MARGEM = 36;
+    
+    // Posições fixas do rodapé: QR Code à direita, dados da empresa e data de emissão à esquerda
+    public static final float QR_X = 450;
+    public static final float QR_Y = 50;
+    public static final float QR_TAMANHO = 80;
+    public static final float RODAPE_X = MARGEM;
+    public static final float RODAPE_LARGURA = QR_X - MARGEM - 20;
+    public static final float EMISSAO_Y = 40;
+    public static final float NUMERO_PAGINA_Y = 20;
+    private static final float EMPRESA_Y = 58;
+    private static final float TOPO_RODAPE = 140;
+    private static final float LOGO_LARGURA = 150;
+    
+    /**
+     * Logo já reduzido para o PDF: 150 dpi na largura impressa e paleta
+     * indexada de 4 cores, gerado uma vez a partir de {@code static/llz.png}.
+     * Comprime muito melhor que o original em RGB e não exige AWT na subida.
+     */
+    private static final String LOGO = "static/llz-cnd.png";
+    
+    @Value("${company.name}")
+    private String companyName;
+    
+    @Value("${company.address}")
+    private String companyAddress;
+    
+    @Value("${company.neighborhood}")
+    private String companyNeighborhood;
+    
+    @Value("${company.city}")
+    private String companyCity;
+    
+    @Value("${company.state}")
+    private String companyState;
+    
+    @Value("${company.zipcode}")
+    private String companyZipcode;
+    
+    @Value("${company.phone}")
+    private String companyPhone;
+    
+    @Value("${company.email}")
+    private String companyEmail;
+    
+    /** PDF de uma página com o conteúdo estático já renderizado. */
+    private byte[] conteudo;
+    
+    /** Área livre entre o cabeçalho e o rodapé, onde entram os dados da unidade. */
+    @Getter
+    private Rectangle areaConteudo;
+    
+    @PostConstruct
+    public void compilar() {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            PdfDocument pdf = new PdfDocument(new PdfWriter(baos, propriedadesEscrita()));
+            Document document = new Document(pdf, TAMANHO_PAGINA);
+            document.setMargins(MARGEM, MARGEM, MARGEM, MARGEM);
+            
+            PdfFont fontRegular = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            PdfFont fontBold = PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD);
+            
+            adicionarHeader(document, fontBold);
+            
+            // Tudo o que vier depois do título é variável: guardamos a área restante
+            Rectangle restante = document.getRenderer().getCurrentArea().getBBox();
+            areaConteudo = new Rectangle(restante.getLeft(), TOPO_RODAPE,
+                restante.getWidth(), restante.getTop() - TOPO_RODAPE);
+            
+            adicionarDadosEmpresa(document, fontRegular);
+            adicionarRodape(document, fontRegular);
+            
+            document.close();
+            conteudo = baos.toByteArray();
+            log.info("Template da CND compilado ({} bytes)", conteudo.length);
+            
+        } catch (Exception e) {
+            log.error("Erro ao compilar template da CND: {}", e.getMessage(), e);
+            throw new IllegalStateException("Erro ao compilar template da CND", e);
+        }
+    }
+    
+    /**
+     * Compressão máxima com object streams e xref stream: os objetos que não
+     * são streams (dicionários de página, fontes, anotações) também vão
+     * comprimidos. Nova instância a cada documento, pois o PdfWriter a altera.
+     */
+    public static WriterProperties propriedadesEscrita() {
+        return new WriterProperties()
+            .setFullCompressionMode(true)
+            .setCompressionLevel(CompressionConstants.BEST_COMPRESSION);
+    }
+    
+    /**
+     * Bytes do modelo. O array é compartilhado e não deve ser alterado.
+     */
+    public byte[] getConteudo() {
+        return conteudo;
+    }
+    
+    private void adicionarHeader(Document document, PdfFont fontBold) {
+        // Logo
+        try (InputStream is = new ClassPathResource(LOGO).getInputStream()) {
+            ImageData logoData = ImageDataFactory.create(is.readAllBytes());
+            Image logo = new Image(logoData);
+            logo.setWidth(LOGO_LARGURA);
+            logo.setHorizontalAlignment(HorizontalAlignment.CENTER);
+            document.add(logo);
+        } catch (Exception e) {
+            log.warn("Erro ao carregar logo: {}", e.getMessage());
+        }
+        
+        // Título
+        Paragraph titulo = new Paragraph("CERTIDÃO NEGATIVA DE DÉBITOS")
+            .setFont(fontBold)
+            .setFontSize(20)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setFontColor(ColorConstants.DARK_GRAY)
+            .setMarginTop(20)
+            .setMarginBottom(30);
+        document.add(titulo);
+    }
+    
+    private void adicionarDadosEmpresa(Document document, PdfFont fontRegular) {
+        Paragraph empresaInfo = new Paragraph()
+            .setFont(fontRegular)
+            .setFontSize(10)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setFontColor(ColorConstants.GRAY)
+            .setFixedPosition(RODAPE_X, EMPRESA_Y, RODAPE_LARGURA);
+        
+        empresaInfo.add(companyName + "\n");
+        empresaInfo.add(companyAddress + " - " + companyNeighborhood + "\n");
+        empresaInfo.add(companyCity + "/" + companyState + " - CEP: " + companyZipcode + "\n");
+        empresaInfo.add("Tel: " + companyPhone + " | " + companyEmail);
+        
+        document.add(empresaInfo);
+    }
+    
+    private void adicionarRodape(Document document, PdfFont fontRegular) {
+        // Texto do QR Code
+        Paragraph qrTexto = new Paragraph("Validar documento")
+            .setFont(fontRegular)
+            .setFontSize(8)
+            .setFixedPosition(QR_X - 10, QR_Y - 15, 100)
+            .setTextAlignment(TextAlignment.CENTER)
+            .setFontColor(ColorConstants.GRAY);
+        document.add(qrTexto);
+        
+        // Placeholder para hash - será calculado após geração
+        Paragraph hashInfo = new Paragraph("Hash do documento será calculado após assinatura")
+            .setFont(fontRegular)
+            .setFontSize(8)
+            .setTextAlignment(TextAlignment.LEFT)
+            .setFixedPosition(50, 20, 300)
+            .setFontColor(ColorConstants.LIGHT_GRAY);
+        document.add(hashInfo);
+    }
+}
@@ -1,89 +1,291 @@
 package br.com.llz.cnd.service;
 
+import br.com.llz.cnd.antifraude.LimitadorTentativas;
+import br.com.llz.cnd.antifraude.TipoLimite;
 import br.com.llz.cnd.dto.CndValidacaoResponse;
+import br.com.llz.cnd.dto.DocumentoCnd;
 import br.com.llz.cnd.dto.UnidadeCndRequest;
-import br.com.llz.cnd.entity.UnidadeCnd;
+import br.com.llz.cnd.dto.ValidacaoHashRequest;
+import br.com.llz.cnd.dto.ValidacaoHashResponse;
+import br.com.llz.cnd.repository.CndDocumentosResumo;
+import br.com.llz.cnd.repository.CndHashResumo;
+import br.com.llz.cnd.repository.CndValidacaoResumo;
 import br.com.llz.cnd.repository.UnidadeCndRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Optional;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CndValidacaoService {
     
-    private static final int MAX_TENTATIVAS_HORA = 5;
     private final UnidadeCndRepository cndRepository;
+    private final LimitadorTentativas limitadorTentativas;
+    private final GeradorCodigoValidacao geradorCodigoValidacao;
     
+    @Value("${cnd.max.tentativas.hora}")
+    private int maxTentativasHora;
+    
+    @Value("${cnd.max.tentativas.ip.hora}")
+    private int maxTentativasIpHora;
+    
+    @Value("${cnd.validacao.cache.tamanho-maximo}")
+    private long cacheTamanhoMaximo;
+    
+    @Value("${cnd.validacao.cache.expiracao-minutos}")
+    private long cacheExpiracaoMinutos;
+    
+    @Value("${cnd.validacao.cache-negativo.tamanho-maximo}")
+    private long cacheNegativoTamanhoMaximo;
+    
+    @Value("${cnd.validacao.cache-negativo.expiracao-segundos}")
+    private long cacheNegativoExpiracaoSegundos;
+    
+    @Value("${cnd.validacao.hash.lote-maximo}")
+    private int loteMaximoHashes;
+    
+    /**
+     * Respostas de validação de CNDs já assinadas, por código. Só o estado
+     * terminal ASSINADO entra no cache; a expiração limita quanto tempo outro
+     * nó pode servir uma resposta após uma mudança de status, e nunca passa do
+     * vencimento da CND (ver {@link ExpiracaoValidacao}).
+     */
+    private Cache<String, CndValidacaoResponse> cacheValidacao;
+    
+    /**
+     * Códigos consultados em validar-hash que não existem. A expiração curta
+     * cobre o intervalo entre a geração do código e a gravação da CND.
+     */
+    private Cache<String, Boolean> cacheInexistentes;
+    
+    @PostConstruct
+    public void inicializar() {
+        cacheValidacao = Caffeine.newBuilder()
+            .maximumSize(cacheTamanhoMaximo)
+            .expireAfter(new ExpiracaoValidacao(Duration.ofMinutes(cacheExpiracaoMinutos)))
+            .recordStats()
+            .build();
+        cacheInexistentes = Caffeine.newBuilder()
+            .maximumSize(cacheNegativoTamanhoMaximo)
+            .expireAfterWrite(Duration.ofSeconds(cacheNegativoExpiracaoSegundos))
+            .recordStats()
+            .build();
+    }
+    
+    /**
+     * Limita as emissões por unidade + parâmetros e por IP em janela deslizante
+     * de uma hora. A contagem fica no {@link LimitadorTentativas}, fora do banco.
+     * Uma emissão recusada pelo limite de IP devolve a tentativa da unidade.
+     */
     public void validarAntiFraude(Long unidadeId, UnidadeCndRequest request, String ip) {
-        String hashParametros = calcularHash(unidadeId, request);
-        
-        Optional<UnidadeCnd> ultimaCnd = cndRepository
-            .findByUnidadeIdAndHashParametrosAndDtCriacaoAfter(
-                unidadeId, hashParametros, LocalDateTime.now().minusHours(1)
-            );
+        String parametros = unidadeId + "|" + request.getComPeriodo() + "|" + request.getComAssinatura();
+        long chaveParametros = LimitadorTentativas.chave(parametros);
+        if (!limitadorTentativas.tentar(TipoLimite.PARAMETROS, chaveParametros, maxTentativasHora)) {
+            throw new RuntimeException("Muitas tentativas. Tente novamente em 60 minutos");
+        }
         
-        if (ultimaCnd.isPresent()) {
-            UnidadeCnd cnd = ultimaCnd.get();
-            if (cnd.getTentativasEmissao() >= MAX_TENTATIVAS_HORA) {
-                throw new RuntimeException("Muitas tentativas. Tente novamente em 60 minutos");
-            }
-            
-            // Incrementar tentativas
-            cnd.setTentativasEmissao(cnd.getTentativasEmissao() + 1);
-            cndRepository.save(cnd);
+        if (ip != null && !limitadorTentativas.tentar(TipoLimite.IP, LimitadorTentativas.chave(ip), maxTentativasIpHora)) {
+            limitadorTentativas.devolver(TipoLimite.PARAMETROS, chaveParametros);
+            log.warn("Limite de emissões por IP atingido: {}", ip);
+            throw new RuntimeException("Muitas tentativas deste endereço. Tente novamente em 60 minutos");
         }
     }
     
     public String gerarCodigoValidacao() {
-        // Formato: CND + timestamp + random (ex: CND240315001)
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyMMdd"));
-        String random = String.format("%03d", new Random().nextInt(1000));
-        return "CND" + timestamp + random;
+        return geradorCodigoValidacao.gerar();
     }
     
     public CndValidacaoResponse validarPorCodigo(String codigo) {
-        UnidadeCnd cnd = cndRepository.findByCodigoValidacao(codigo)
+        if (!GeradorCodigoValidacao.formatoValido(codigo)) {
+            throw new RuntimeException("CND não encontrada");
+        }
+        
+        CndValidacaoResponse emCache = cacheValidacao.getIfPresent(codigo);
+        if (emCache != null) {
+            return emCache;
+        }
+        
+        CndValidacaoResumo cnd = cndRepository.buscarValidacao(codigo)
             .orElseThrow(() -> new RuntimeException("CND não encontrada"));
         
-        return CndValidacaoResponse.builder()
+        // Vencida e ainda não varrida pelo ciclo de vida: não é mais válida
+        boolean vigente = cnd.dtExpiracao() == null || cnd.dtExpiracao().isAfter(LocalDateTime.now());
+        CndValidacaoResponse response = CndValidacaoResponse.builder()
             .codigoValidacao(codigo)
-            .valido("ASSINADO".equals(cnd.getStatus()))
-            .status(cnd.getStatus())
-            .dataEmissao(cnd.getDtCriacao())
-            .dataAssinatura(cnd.getDtAssinatura())
-            .nomeCondominio(cnd.getUnidade() != null && cnd.getUnidade().getCondominio() != null ? 
-                cnd.getUnidade().getCondominio().getRazaoSocial() : "N/A")
-            .unidadeCodigo(cnd.getUnidade() != null ? cnd.getUnidade().getCodigo() : "N/A")
-            .bloco(cnd.getUnidade() != null ? cnd.getUnidade().getBloco() : "N/A")
-            .hashDocumento(cnd.getDocumentoAssinado() != null ? 
-                DigestUtils.sha256Hex(cnd.getDocumentoAssinado()) : null)
-            .dadosAssinatura(cnd.getDadosAssinatura())
+            .valido("ASSINADO".equals(cnd.status()) && vigente)
+            .status(cnd.status())
+            .dataEmissao(cnd.dtCriacao())
+            .dataAssinatura(cnd.dtAssinatura())
+            .dataExpiracao(cnd.dtExpiracao())
+            .nomeCondominio(cnd.razaoSocial() != null ? cnd.razaoSocial() : "N/A")
+            .unidadeCodigo(cnd.unidadeCodigo() != null ? cnd.unidadeCodigo() : "N/A")
+            .bloco(cnd.unidadeCodigo() != null ? cnd.bloco() : "N/A")
+            .hashDocumento(cnd.hashDocumentoAssinado())
+            .dadosAssinatura(cnd.dadosAssinatura())
             .build();
+        
+        if (response.isValido()) {
+            cacheValidacao.put(codigo, response);
+        }
+        return response;
+    }
+    
+    /**
+     * Confere o hash informado com o gravado para o documento vigente da CND
+     * (o assinado, se já existir), sem ler o documento. Código inexistente ou
+     * hash diferente resultam em {@code false}.
+     */
+    public boolean validarHash(String codigo, String hash) {
+        ValidacaoHashRequest item = new ValidacaoHashRequest();
+        item.setCodigoValidacao(codigo);
+        item.setHash(hash);
+        return validarHashes(List.of(item)).get(0).isValido();
     }
     
-    public byte[] obterDocumentoAssinado(String codigo) {
-        UnidadeCnd cnd = cndRepository.findByCodigoValidacao(codigo)
+    /**
+     * Versão em lote de {@link #validarHash}: os hashes gravados de todos os
+     * códigos são lidos em uma consulta por bloco de até 1000 códigos.
+     */
+    public List<ValidacaoHashResponse> validarHashes(List<ValidacaoHashRequest> itens) {
+        if (itens.size() > loteMaximoHashes) {
+            throw new RuntimeException("Máximo de " + loteMaximoHashes + " hashes por requisição");
+        }
+        
+        Set<String> consultar = new LinkedHashSet<>();
+        for (ValidacaoHashRequest item : itens) {
+            String codigo = item.getCodigoValidacao();
+            if (GeradorCodigoValidacao.formatoValido(codigo) && cacheInexistentes.getIfPresent(codigo) == null) {
+                consultar.add(codigo);
+            }
+        }
+        
+        Map<String, String> hashes = new HashMap<>();
+        List<String> codigos = new ArrayList<>(consultar);
+        for (int inicio = 0; inicio < codigos.size(); inicio += 1000) {
+            List<String> bloco = codigos.subList(inicio, Math.min(inicio + 1000, codigos.size()));
+            for (CndHashResumo cnd : cndRepository.buscarHashes(bloco)) {
+                hashes.put(cnd.codigoValidacao(), cnd.hashDocumento());
+            }
+        }
+        for (String codigo : consultar) {
+            if (!hashes.containsKey(codigo)) {
+                cacheInexistentes.put(codigo, Boolean.TRUE);
+            }
+        }
+        
+        List<ValidacaoHashResponse> respostas = new ArrayList<>(itens.size());
+        for (ValidacaoHashRequest item : itens) {
+            respostas.add(ValidacaoHashResponse.builder()
+                .codigoValidacao(item.getCodigoValidacao())
+                .valido(hashIgual(hashes.get(item.getCodigoValidacao()), item.getHash()))
+                .build());
+        }
+        return respostas;
+    }
+    
+    /**
+     * Comparação em tempo constante, para não revelar pelo tempo de resposta
+     * quantos caracteres do hash conferem. Aceita o hash entre aspas (corpo
+     * JSON) e em maiúsculas.
+     */
+    private static boolean hashIgual(String gravado, String informado) {
+        if (gravado == null || informado == null) {
+            return false;
+        }
+        String normalizado = informado.trim();
+        if (normalizado.length() >= 2 && normalizado.startsWith("\"") && normalizado.endsWith("\"")) {
+            normalizado = normalizado.substring(1, normalizado.length() - 1).trim();
+        }
+        return MessageDigest.isEqual(gravado.getBytes(StandardCharsets.US_ASCII),
+            normalizado.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * Remove as respostas em cache das CNDs cujo status mudou.
+     */
+    public void invalidarCache(Collection<String> codigos) {
+        cacheValidacao.invalidateAll(codigos);
+    }
+    
+    /**
+     * Documento a ser entregue no download: o assinado, se já existir, ou o
+     * original enquanto a assinatura não termina. Assinados de CNDs antigas
+     * podem estar no arquivo frio.
+     */
+    public DocumentoCnd localizarDocumento(String codigo) {
+        CndDocumentosResumo cnd = cndRepository.buscarDocumentos(codigo)
             .orElseThrow(() -> new RuntimeException("CND não encontrada"));
         
-        if (cnd.getDocumentoAssinado() != null) {
-            return cnd.getDocumentoAssinado();
-        } else if (cnd.getDocumentoPdf() != null) {
-            return cnd.getDocumentoPdf();
+        if (cnd.hashDocumentoAssinado() != null) {
+            return DocumentoCnd.builder()
+                .hash(cnd.hashDocumentoAssinado())
+                .tamanho(cnd.tamanhoDocumentoAssinado())
+                .assinado(true)
+                .arquivado(cnd.dtArquivamento() != null)
+                .build();
+        } else if (cnd.hashDocumentoPdf() != null) {
+            return DocumentoCnd.builder()
+                .hash(cnd.hashDocumentoPdf())
+                .tamanho(cnd.tamanhoDocumentoPdf())
+                .assinado(false)
+                .build();
         } else {
             throw new RuntimeException("Documento não disponível");
         }
     }
     
-    private String calcularHash(Long unidadeId, UnidadeCndRequest request) {
-        String dados = unidadeId + "|" + request.getComPeriodo() + "|" + request.getComAssinatura();
-        return DigestUtils.sha256Hex(dados);
+    /**
+     * Mantém cada resposta pelo tempo configurado ou até o vencimento da CND,
+     * o que vier antes: um nó que não recebeu a invalidação do ciclo de vida
+     * deixa de responder "válida" no instante em que ela vence.
+     */
+    static final class ExpiracaoValidacao implements Expiry<String, CndValidacaoResponse> {
+        
+        private final long maximoNanos;
+        
+        ExpiracaoValidacao(Duration maximo) {
+            this.maximoNanos = maximo.toNanos();
+        }
+        
+        @Override
+        public long expireAfterCreate(String codigo, CndValidacaoResponse response, long agoraNanos) {
+            LocalDateTime vencimento = response.getDataExpiracao();
+            if (vencimento == null) {
+                return maximoNanos;
+            }
+            long restanteNanos = Duration.between(LocalDateTime.now(), vencimento).toNanos();
+            return Math.max(0, Math.min(maximoNanos, restanteNanos));
+        }
+        
+        @Override
+        public long expireAfterUpdate(String codigo, CndValidacaoResponse response, long agoraNanos,
+                                      long duracaoAtualNanos) {
+            return expireAfterCreate(codigo, response, agoraNanos);
+        }
+        
+        @Override
+        public long expireAfterRead(String codigo, CndValidacaoResponse response, long agoraNanos,
+                                    long duracaoAtualNanos) {
+            return duracaoAtualNanos;
+        }
     }
-}
\ No newline at end of file
+}
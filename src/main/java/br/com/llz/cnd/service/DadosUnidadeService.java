@@ -0,0 +1,130 @@
+package br.com.llz.cnd.service;
+
+import br.com.llz.cnd.dto.UnidadeCndData;
+import br.com.llz.cnd.dto.UnidadeCndRequest;
+import br.com.llz.cnd.repository.CondominioResumo;
+import br.com.llz.cnd.repository.UnidadeDadosResumo;
+import br.com.llz.cnd.repository.UnidadeRepository;
+import br.com.llz.cnd.repository.UnidadeResumo;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Monta os dados impressos na CND. A unidade vem de uma projeção (uma
+ * consulta para uma ou centenas de unidades); condomínio e endereço, que
+ * quase não mudam, ficam em cache e os ausentes são carregados juntos em uma
+ * única consulta com join.
+ * <p>
+ * Esta API não altera condomínio nem endereço; as alterações chegam direto
+ * ao banco e não há como invalidar o cache. Uma CND pode sair com dados de
+ * até {@code cnd.dados.cache.expiracao-minutos} atrás.
+ */
+@Service
+@RequiredArgsConstructor
+public class DadosUnidadeService {
+    
+    private static final List<String> VENCIMENTOS_EXEMPLO = List.of("01/01/2024", "01/02/2024", "01/03/2024");
+    
+    private final UnidadeRepository unidadeRepository;
+    
+    @Value("${cnd.dados.cache.tamanho-maximo}")
+    private long cacheTamanhoMaximo;
+    
+    @Value("${cnd.dados.cache.expiracao-minutos}")
+    private long cacheExpiracaoMinutos;
+    
+    private LoadingCache<Long, CondominioResumo> cacheCondominios;
+    
+    @PostConstruct
+    public void inicializar() {
+        cacheCondominios = Caffeine.newBuilder()
+            .maximumSize(cacheTamanhoMaximo)
+            .expireAfterWrite(Duration.ofMinutes(cacheExpiracaoMinutos))
+            .recordStats()
+            .build(new CacheLoader<>() {
+                @Override
+                public CondominioResumo load(Long condominioId) {
+                    return loadAll(Set.of(condominioId)).get(condominioId);
+                }
+                
+                @Override
+                public Map<Long, CondominioResumo> loadAll(Set<? extends Long> condominioIds) {
+                    return unidadeRepository.buscarCondominios(List.copyOf(condominioIds)).stream()
+                        .collect(Collectors.toMap(CondominioResumo::condominioId, Function.identity()));
+                }
+            });
+    }
+    
+    /** Unidade ativa com os dados do condomínio, ou vazio se não existe. */
+    public Optional<UnidadeDadosResumo> buscar(Long unidadeId) {
+        return buscar(List.of(unidadeId)).stream().findFirst();
+    }
+    
+    /** Unidades ativas entre os ids informados, ordenadas por bloco e código. */
+    public List<UnidadeDadosResumo> buscar(Collection<Long> unidadeIds) {
+        return completar(unidadeRepository.buscarUnidades(unidadeIds));
+    }
+    
+    /** Unidades ativas do condomínio, ordenadas por bloco e código. */
+    public List<UnidadeDadosResumo> buscarCondominio(Long condominioId) {
+        return completar(unidadeRepository.buscarUnidadesCondominio(condominioId));
+    }
+    
+    public UnidadeCndData montar(UnidadeDadosResumo unidade, UnidadeCndRequest request, String validadeDocumento) {
+        return UnidadeCndData.builder()
+            .nomeCondominio(unidade.razaoSocial())
+            .logradouro(unidade.logradouro())
+            .numero(unidade.numero())
+            .bairro(unidade.bairro())
+            .cidade(unidade.cidade())
+            .uf(unidade.uf())
+            .cep(unidade.cep())
+            .unidadeCodigo(unidade.unidadeCodigo())
+            .bloco(unidade.bloco())
+            .validadeDocumento(validadeDocumento)
+            .usuario("Sistema Automatizado")
+            .dataVencimento(datasVencimento(request))
+            .comPeriodo(request.getComPeriodo())
+            .build();
+    }
+    
+    private List<UnidadeDadosResumo> completar(List<UnidadeResumo> unidades) {
+        if (unidades.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, CondominioResumo> condominios = cacheCondominios.getAll(
+            unidades.stream().map(UnidadeResumo::condominioId).collect(Collectors.toSet()));
+        
+        List<UnidadeDadosResumo> dados = new ArrayList<>(unidades.size());
+        for (UnidadeResumo unidade : unidades) {
+            CondominioResumo condominio = condominios.get(unidade.condominioId());
+            if (condominio != null) {
+                dados.add(UnidadeDadosResumo.de(unidade, condominio));
+            }
+        }
+        return dados;
+    }
+    
+    /**
+     * Vencimentos impressos com {@code comPeriodo}. O esquema ainda não tem
+     * cobranças por unidade, então a lista é fixa até essa tabela existir.
+     */
+    private static List<String> datasVencimento(UnidadeCndRequest request) {
+        return request.getComPeriodo() ? VENCIMENTOS_EXEMPLO : null;
+    }
+}
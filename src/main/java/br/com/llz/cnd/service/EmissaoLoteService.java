@@ -0,0 +1,546 @@
+package br.com.llz.cnd.service;
+
+import br.com.llz.cnd.adimplencia.AdimplenciaService;
+import br.com.llz.cnd.dto.EmissaoLoteItem;
+import br.com.llz.cnd.dto.EmissaoLoteRequest;
+import br.com.llz.cnd.dto.EmissaoLoteResponse;
+import br.com.llz.cnd.dto.UnidadeCndData;
+import br.com.llz.cnd.dto.UnidadeCndRequest;
+import br.com.llz.cnd.metricas.MetricasCnd;
+import br.com.llz.cnd.repository.UnidadeDadosResumo;
+import br.com.llz.cnd.storage.ArquivoFrio;
+import br.com.llz.cnd.storage.DocumentoGerado;
+import br.com.llz.cnd.storage.DocumentoStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Emissão de CNDs para todas as unidades de um condomínio (ou uma lista de
+ * unidades) em um job assíncrono. Os dados das unidades vêm de uma única
+ * consulta; cada bloco de unidades é renderizado em paralelo em um
+ * {@link ForkJoinPool} próprio e gravado com batch JDBC, com a mesma
+ * idempotência da emissão individual. Os jobs ficam em memória no nó que os
+ * recebeu.
+ */
+@Service
+@Slf4j
+public class EmissaoLoteService {
+    
+    // CNDs ativas das unidades do bloco; a chave (unidade, parâmetros) é única entre as ativas
+    private static final String SQL_ATIVAS =
+        "SELECT unidade_id, codigo_validacao, status, dt_expiracao FROM unidade_cnd " +
+        "WHERE unidade_id = ANY(?) AND hash_parametros = ANY(?) AND reg_ativo";
+    
+    static final String ARQUIVO_AUSENTES = "cnds-nao-incluidas.txt";
+    
+    private static final String SQL_DOCUMENTOS =
+        "SELECT codigo_validacao, COALESCE(hash_documento_assinado, hash_documento_pdf) AS hash, " +
+        "CASE WHEN hash_documento_assinado IS NOT NULL THEN tamanho_documento_assinado " +
+        "ELSE tamanho_documento_pdf END AS tamanho, " +
+        "hash_documento_assinado IS NOT NULL AND dt_arquivamento IS NOT NULL AS arquivado " +
+        "FROM unidade_cnd WHERE codigo_validacao = ANY(?)";
+    
+    private final DadosUnidadeService dadosUnidadeService;
+    private final AdimplenciaService adimplenciaService;
+    private final JdbcTemplate jdbcTemplate;
+    private final CndPdfService cndPdfService;
+    private final CndValidacaoService cndValidacaoService;
+    private final DocumentoStore documentoStore;
+    private final ArquivoFrio arquivoFrio;
+    private final MetricasCnd metricas;
+    private final Executor taskExecutor;
+    private final TransactionTemplate transacaoLeitura;
+    private final TransactionTemplate transacaoEscrita;
+    private final AtomicInteger jobsEmAndamento = new AtomicInteger();
+    
+    @Value("${cnd.lote.max-unidades}")
+    private int maxUnidades;
+    
+    @Value("${cnd.lote.max-simultaneos}")
+    private int maxSimultaneos;
+    
+    @Value("${cnd.lote.bloco}")
+    private int tamanhoBloco;
+    
+    @Value("${cnd.lote.paralelismo:0}")
+    private int paralelismo;
+    
+    @Value("${cnd.lote.retencao-minutos}")
+    private long retencaoMinutos;
+    
+    @Value("${cnd.expiracao.dias}")
+    private int expiracaoDias;
+    
+    private ForkJoinPool renderizacao;
+    private Cache<String, EmissaoLote> jobs;
+    
+    public EmissaoLoteService(DadosUnidadeService dadosUnidadeService, AdimplenciaService adimplenciaService,
+                              JdbcTemplate jdbcTemplate, CndPdfService cndPdfService,
+                              CndValidacaoService cndValidacaoService, DocumentoStore documentoStore,
+                              ArquivoFrio arquivoFrio, MetricasCnd metricas,
+                              @Qualifier("taskExecutor") Executor taskExecutor,
+                              PlatformTransactionManager transactionManager) {
+        this.dadosUnidadeService = dadosUnidadeService;
+        this.adimplenciaService = adimplenciaService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cndPdfService = cndPdfService;
+        this.cndValidacaoService = cndValidacaoService;
+        this.documentoStore = documentoStore;
+        this.arquivoFrio = arquivoFrio;
+        this.metricas = metricas;
+        this.taskExecutor = taskExecutor;
+        this.transacaoLeitura = new TransactionTemplate(transactionManager);
+        this.transacaoLeitura.setReadOnly(true);
+        this.transacaoEscrita = new TransactionTemplate(transactionManager);
+    }
+    
+    @PostConstruct
+    public void inicializar() {
+        int threads = paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors();
+        AtomicInteger sequencia = new AtomicInteger();
+        renderizacao = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("CND-Lote-" + sequencia.incrementAndGet());
+            return thread;
+        }, null, false);
+        
+        // Jobs concluídos ficam disponíveis para consulta e download pelo período de retenção
+        jobs = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(retencaoMinutos))
+            .build();
+    }
+    
+    @PreDestroy
+    public void encerrar() {
+        renderizacao.shutdownNow();
+    }
+    
+    /**
+     * Valida o pedido, carrega as unidades e agenda o job; a resposta traz o
+     * id para acompanhar o progresso.
+     */
+    public EmissaoLoteResponse iniciar(EmissaoLoteRequest request, String ip) {
+        boolean porCondominio = request.getCondominioId() != null;
+        boolean porUnidades = request.getUnidadeIds() != null && !request.getUnidadeIds().isEmpty();
+        if (porCondominio == porUnidades) {
+            throw new RuntimeException("Informe o condomínio ou a lista de unidades");
+        }
+        
+        Set<Long> solicitadas = porUnidades ? new LinkedHashSet<>(request.getUnidadeIds()) : Set.of();
+        if (solicitadas.size() > maxUnidades) {
+            throw new RuntimeException("Máximo de " + maxUnidades + " unidades por lote");
+        }
+        
+        List<UnidadeDadosResumo> unidades = transacaoLeitura.execute(status -> porCondominio
+            ? dadosUnidadeService.buscarCondominio(request.getCondominioId())
+            : dadosUnidadeService.buscar(solicitadas));
+        if (unidades.isEmpty()) {
+            throw new RuntimeException("Nenhuma unidade ativa encontrada");
+        }
+        if (unidades.size() > maxUnidades) {
+            throw new RuntimeException("Máximo de " + maxUnidades + " unidades por lote");
+        }
+        
+        if (jobsEmAndamento.incrementAndGet() > maxSimultaneos) {
+            jobsEmAndamento.decrementAndGet();
+            throw new RuntimeException("Muitas emissões em lote em andamento. Tente novamente em instantes");
+        }
+        
+        // Unidades pedidas que não existem (ou estão inativas) entram no job já com erro
+        List<UnidadeDadosResumo> encontradas = new ArrayList<>(unidades);
+        Set<Long> ausentes = new LinkedHashSet<>(solicitadas);
+        unidades.forEach(unidade -> ausentes.remove(unidade.unidadeId()));
+        
+        UnidadeCndRequest parametros = new UnidadeCndRequest();
+        parametros.setComAssinatura(request.getComAssinatura());
+        parametros.setComPeriodo(request.getComPeriodo());
+        parametros.setCanalEmissao(request.getCanalEmissao());
+        
+        EmissaoLote job = new EmissaoLote(UUID.randomUUID().toString(), encontradas.size() + ausentes.size());
+        int indice = encontradas.size();
+        for (Long unidadeId : ausentes) {
+            job.comErro.incrementAndGet();
+            job.finalizar(indice++, EmissaoLoteItem.builder()
+                .unidadeId(unidadeId)
+                .status("ERRO")
+                .erro("Unidade não encontrada")
+                .build());
+        }
+        jobs.put(job.id, job);
+        log.info("Emissão em lote {} iniciada: {} unidades (IP {})", job.id, job.total, ip);
+        
+        try {
+            CompletableFuture.runAsync(() -> processar(job, encontradas, parametros, ip), taskExecutor);
+        } catch (RuntimeException e) {
+            jobsEmAndamento.decrementAndGet();
+            jobs.invalidate(job.id);
+            throw e;
+        }
+        return job.toResponse(false);
+    }
+    
+    public Optional<EmissaoLoteResponse> consultar(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId)).map(job -> job.toResponse(true));
+    }
+    
+    /**
+     * Escreve o ZIP com os PDFs do job (o assinado quando já existir), lendo
+     * cada documento do store, ou do arquivo frio se já foi arquivado, direto
+     * para a saída. CNDs sem documento disponível são listadas em
+     * {@value #ARQUIVO_AUSENTES}.
+     */
+    public void escreverZip(String jobId, OutputStream saida) throws IOException {
+        EmissaoLote job = jobs.getIfPresent(jobId);
+        if (job == null) {
+            throw new RuntimeException("Emissão em lote não encontrada");
+        }
+        
+        List<EmissaoLoteItem> itens = new ArrayList<>();
+        for (int i = 0; i < job.total; i++) {
+            EmissaoLoteItem item = job.itens.get(i);
+            if (item != null && item.getCodigoValidacao() != null) {
+                itens.add(item);
+            }
+        }
+        
+        Map<String, DocumentoLote> documentos = new HashMap<>();
+        jdbcTemplate.query(SQL_DOCUMENTOS,
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar",
+                itens.stream().map(EmissaoLoteItem::getCodigoValidacao).toArray())),
+            rs -> {
+                documentos.put(rs.getString("codigo_validacao"),
+                    new DocumentoLote(rs.getString("hash"), rs.getLong("tamanho"), rs.getBoolean("arquivado")));
+            });
+        
+        ZipOutputStream zip = new ZipOutputStream(saida);
+        // PDFs já são comprimidos
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        WritableByteChannel canal = Channels.newChannel(zip);
+        List<String> ausentes = new ArrayList<>();
+        for (EmissaoLoteItem item : itens) {
+            DocumentoLote documento = documentos.get(item.getCodigoValidacao());
+            if (documento == null || documento.hash() == null) {
+                ausentes.add(item.getCodigoValidacao());
+                continue;
+            }
+            // Assinados de CNDs inativas vão para o arquivo frio, inclusive depois da consulta acima
+            boolean arquivado = documento.arquivado() || !documentoStore.existe(documento.hash());
+            if (arquivado && !arquivoFrio.existe(documento.hash())) {
+                log.warn("Documento da CND {} não encontrado para o ZIP do lote {}", item.getCodigoValidacao(), jobId);
+                ausentes.add(item.getCodigoValidacao());
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry(nomeArquivo(item)));
+            if (arquivado) {
+                arquivoFrio.transferir(documento.hash(), 0, documento.tamanho(), canal);
+            } else {
+                documentoStore.transferir(documento.hash(), 0, documento.tamanho(), canal);
+            }
+            zip.closeEntry();
+        }
+        
+        // A resposta já está sendo enviada: as CNDs que ficaram de fora são listadas no próprio ZIP
+        if (!ausentes.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(ARQUIVO_AUSENTES));
+            zip.write(("CNDs sem documento disponível:\n" + String.join("\n", ausentes) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+    
+    private void processar(EmissaoLote job, List<UnidadeDadosResumo> unidades, UnidadeCndRequest request, String ip) {
+        try {
+            for (int inicio = 0; inicio < unidades.size(); inicio += tamanhoBloco) {
+                processarBloco(job, unidades.subList(inicio, Math.min(inicio + tamanhoBloco, unidades.size())),
+                    inicio, request, ip);
+            }
+            job.concluir("CONCLUIDO");
+            log.info("Emissão em lote {} concluída: {} emitidas, {} reaproveitadas, {} com erro", job.id,
+                job.total - job.reaproveitadas.get() - job.comErro.get(), job.reaproveitadas.get(), job.comErro.get());
+        } catch (Exception e) {
+            log.error("Erro na emissão em lote {}: {}", job.id, e.getMessage(), e);
+            job.concluir("ERRO");
+        } finally {
+            jobsEmAndamento.decrementAndGet();
+        }
+    }
+    
+    private void processarBloco(EmissaoLote job, List<UnidadeDadosResumo> bloco, int deslocamento,
+                                UnidadeCndRequest request, String ip) {
+        List<EmissaoPendente> pendentes = new ArrayList<>(bloco.size());
+        for (int i = 0; i < bloco.size(); i++) {
+            UnidadeDadosResumo unidade = bloco.get(i);
+            pendentes.add(new EmissaoPendente(deslocamento + i, unidade,
+                UnidadeService.calcularHashParametros(unidade.unidadeId(), request)));
+        }
+        
+        // 1. CNDs ainda válidas são reaproveitadas sem renderizar; unidades inadimplentes ficam com erro
+        LocalDateTime agora = LocalDateTime.now();
+        Map<Long, CndAtiva> ativas = buscarAtivas(pendentes);
+        List<EmissaoPendente> renderizar = new ArrayList<>(pendentes.size());
+        for (EmissaoPendente pendente : pendentes) {
+            CndAtiva ativa = ativas.get(pendente.unidade.unidadeId());
+            if (ativa != null && !"ERRO".equals(ativa.status()) && ativa.dtExpiracao().isAfter(agora)) {
+                job.reaproveitadas.incrementAndGet();
+                job.finalizar(pendente.indice, item(pendente.unidade, ativa.codigo(), ativa.status(), null));
+            } else if (!adimplenciaService.isAdimplente(pendente.unidade.unidadeId())) {
+                job.comErro.incrementAndGet();
+                job.finalizar(pendente.indice, item(pendente.unidade, null, "ERRO",
+                    "Unidade possui débitos em aberto. CND não pode ser emitida."));
+            } else {
+                pendente.codigo = cndValidacaoService.gerarCodigoValidacao();
+                renderizar.add(pendente);
+            }
+        }
+        if (renderizar.isEmpty()) {
+            return;
+        }
+        
+        // 2. PDFs renderizados em paralelo, sem conexão com o banco
+        String validade = agora.plusDays(expiracaoDias).format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+        renderizacao.invoke(new Renderizacao(renderizar, request, validade));
+        
+        List<EmissaoPendente> renderizadas = new ArrayList<>(renderizar.size());
+        for (EmissaoPendente pendente : renderizar) {
+            if (pendente.erro != null) {
+                job.comErro.incrementAndGet();
+                job.finalizar(pendente.indice, item(pendente.unidade, null, "ERRO", pendente.erro));
+            } else {
+                renderizadas.add(pendente);
+            }
+        }
+        if (renderizadas.isEmpty()) {
+            return;
+        }
+        
+        // 3. Gravação do bloco em batch, idempotente como na emissão individual
+        Timestamp criacao = Timestamp.valueOf(agora);
+        Timestamp expiracao = Timestamp.valueOf(agora.plusDays(expiracaoDias));
+        transacaoEscrita.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(UnidadeService.SQL_DESATIVAR_ANTERIORES, renderizadas, renderizadas.size(),
+                (ps, pendente) -> {
+                    ps.setLong(1, pendente.unidade.unidadeId());
+                    ps.setString(2, pendente.hashParametros);
+                });
+            jdbcTemplate.batchUpdate(UnidadeService.SQL_INSERIR, renderizadas, renderizadas.size(),
+                (ps, pendente) -> {
+                    ps.setString(1, pendente.codigo);
+                    ps.setLong(2, pendente.unidade.unidadeId());
+                    ps.setString(3, pendente.hashParametros);
+                    ps.setString(4, request.getCanalEmissao());
+                    ps.setString(5, pendente.hashDocumento);
+                    ps.setLong(6, pendente.tamanho);
+                    ps.setTimestamp(7, criacao);
+                    ps.setTimestamp(8, expiracao);
+                    ps.setString(9, ip);
+                    ps.setTimestamp(10, criacao);
+                });
+        });
+        
+        // Se outra emissão gravou antes (conflito), vale a CND dela e o PDF renderizado é descartado
+        Map<Long, CndAtiva> gravadas = buscarAtivas(renderizadas);
+        for (EmissaoPendente pendente : renderizadas) {
+            CndAtiva gravada = gravadas.get(pendente.unidade.unidadeId());
+            if (gravada == null) {
+                job.comErro.incrementAndGet();
+                job.finalizar(pendente.indice, item(pendente.unidade, null, "ERRO", "CND não gravada"));
+                documentoStore.remover(pendente.hashDocumento);
+            } else if (!gravada.codigo().equals(pendente.codigo)) {
+                job.reaproveitadas.incrementAndGet();
+                job.finalizar(pendente.indice, item(pendente.unidade, gravada.codigo(), gravada.status(), null));
+                documentoStore.remover(pendente.hashDocumento);
+            } else {
+                job.finalizar(pendente.indice, item(pendente.unidade, pendente.codigo, "PROCESSANDO", null));
+            }
+        }
+    }
+    
+    private Map<Long, CndAtiva> buscarAtivas(List<EmissaoPendente> pendentes) {
+        Map<Long, CndAtiva> ativas = new HashMap<>();
+        jdbcTemplate.query(SQL_ATIVAS,
+            ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint",
+                    pendentes.stream().map(pendente -> pendente.unidade.unidadeId()).toArray()));
+                ps.setArray(2, ps.getConnection().createArrayOf("varchar",
+                    pendentes.stream().map(pendente -> pendente.hashParametros).toArray()));
+            },
+            rs -> {
+                Timestamp dtExpiracao = rs.getTimestamp("dt_expiracao");
+                ativas.put(rs.getLong("unidade_id"), new CndAtiva(rs.getString("codigo_validacao"), rs.getString("status"),
+                    dtExpiracao != null ? dtExpiracao.toLocalDateTime() : LocalDateTime.MIN));
+            });
+        return ativas;
+    }
+    
+    private void renderizar(EmissaoPendente pendente, UnidadeCndRequest request, String validade) {
+        try {
+            UnidadeCndData dados = dadosUnidadeService.montar(pendente.unidade, request, validade);
+            DocumentoGerado pdf = cndPdfService.gerarDocumento(dados, pendente.codigo);
+            metricas.registrarPdf(pdf.tamanho());
+            pendente.hashDocumento = documentoStore.salvar(pdf);
+            pendente.tamanho = pdf.tamanho();
+        } catch (Exception e) {
+            log.error("Erro ao gerar CND da unidade {}: {}", pendente.unidade.unidadeId(), e.getMessage());
+            pendente.erro = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+    }
+    
+    private static EmissaoLoteItem item(UnidadeDadosResumo unidade, String codigo, String status, String erro) {
+        return EmissaoLoteItem.builder()
+            .unidadeId(unidade.unidadeId())
+            .unidadeCodigo(unidade.unidadeCodigo())
+            .bloco(unidade.bloco())
+            .codigoValidacao(codigo)
+            .status(status)
+            .erro(erro)
+            .build();
+    }
+    
+    private static String nomeArquivo(EmissaoLoteItem item) {
+        String nome = (item.getBloco() != null ? item.getBloco() + "-" : "") + item.getUnidadeCodigo()
+            + "-" + item.getCodigoValidacao();
+        return nome.replaceAll("[^A-Za-z0-9_-]", "_") + ".pdf";
+    }
+    
+    /** Divide as unidades ao meio até uma por tarefa; threads ociosas roubam as metades pendentes. */
+    private final class Renderizacao extends RecursiveAction {
+        
+        private final List<EmissaoPendente> pendentes;
+        private final UnidadeCndRequest request;
+        private final String validade;
+        
+        Renderizacao(List<EmissaoPendente> pendentes, UnidadeCndRequest request, String validade) {
+            this.pendentes = pendentes;
+            this.request = request;
+            this.validade = validade;
+        }
+        
+        @Override
+        protected void compute() {
+            if (pendentes.size() == 1) {
+                renderizar(pendentes.get(0), request, validade);
+                return;
+            }
+            int meio = pendentes.size() / 2;
+            invokeAll(new Renderizacao(pendentes.subList(0, meio), request, validade),
+                new Renderizacao(pendentes.subList(meio, pendentes.size()), request, validade));
+        }
+    }
+    
+    /** Estado de uma unidade durante o processamento do bloco. */
+    private static final class EmissaoPendente {
+        
+        private final int indice;
+        private final UnidadeDadosResumo unidade;
+        private final String hashParametros;
+        private String codigo;
+        private String hashDocumento;
+        private long tamanho;
+        private String erro;
+        
+        EmissaoPendente(int indice, UnidadeDadosResumo unidade, String hashParametros) {
+            this.indice = indice;
+            this.unidade = unidade;
+            this.hashParametros = hashParametros;
+        }
+    }
+    
+    private static final class EmissaoLote {
+        
+        private final String id;
+        private final int total;
+        private final LocalDateTime dataInicio = LocalDateTime.now();
+        private final AtomicReferenceArray<EmissaoLoteItem> itens;
+        private final AtomicInteger processadas = new AtomicInteger();
+        private final AtomicInteger reaproveitadas = new AtomicInteger();
+        private final AtomicInteger comErro = new AtomicInteger();
+        private volatile String status = "PROCESSANDO";
+        private volatile LocalDateTime dataFim;
+        
+        EmissaoLote(String id, int total) {
+            this.id = id;
+            this.total = total;
+            this.itens = new AtomicReferenceArray<>(total);
+        }
+        
+        void finalizar(int indice, EmissaoLoteItem item) {
+            itens.set(indice, item);
+            processadas.incrementAndGet();
+        }
+        
+        void concluir(String status) {
+            this.dataFim = LocalDateTime.now();
+            this.status = status;
+        }
+        
+        EmissaoLoteResponse toResponse(boolean comItens) {
+            List<EmissaoLoteItem> lista = null;
+            if (comItens) {
+                lista = new ArrayList<>(total);
+                for (int i = 0; i < total; i++) {
+                    EmissaoLoteItem item = itens.get(i);
+                    if (item != null) {
+                        lista.add(item);
+                    }
+                }
+            }
+            return EmissaoLoteResponse.builder()
+                .jobId(id)
+                .status(status)
+                .total(total)
+                .processadas(processadas.get())
+                .reaproveitadas(reaproveitadas.get())
+                .comErro(comErro.get())
+                .dataInicio(dataInicio)
+                .dataFim(dataFim)
+                .urlDownload("/api/cnd/lote/" + id + "/zip")
+                .itens(lista)
+                .build();
+        }
+    }
+    
+    private record CndAtiva(String codigo, String status, LocalDateTime dtExpiracao) {
+    }
+    
+    private record DocumentoLote(String hash, long tamanho, boolean arquivado) {
+    }
+}
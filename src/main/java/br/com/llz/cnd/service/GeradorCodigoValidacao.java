@@ -0,0 +1,142 @@
+package br.com.llz.cnd.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Códigos de validação únicos entre nós sem consultar o banco, no formato
+ * {@code CND} + 13 símbolos Crockford base32 + 1 símbolo de verificação
+ * (ex.: {@code CND0A8MR4JAR04000}).
+ * <p>
+ * Os 63 bits codificados seguem o layout Snowflake: 41 bits de milissegundos
+ * desde 2024-01-01, 10 bits do nó ({@code cnd.codigo.no}) e 12 bits de
+ * sequência. O par milissegundo + sequência é avançado por CAS em um único
+ * {@link AtomicLong}: com mais de 4096 códigos no mesmo milissegundo a
+ * sequência transborda para o milissegundo seguinte, e o relógio voltando
+ * para trás não repete códigos enquanto o processo estiver no ar.
+ */
+@Component
+@Slf4j
+public class GeradorCodigoValidacao {
+    
+    public static final String PREFIXO = "CND";
+    public static final int TAMANHO = PREFIXO.length() + 14;
+    
+    static final long EPOCA_MS = 1704067200000L; // 2024-01-01T00:00:00Z
+    static final int BITS_NO = 10;
+    static final int BITS_SEQUENCIA = 12;
+    static final int MAX_NO = (1 << BITS_NO) - 1;
+    
+    private static final int SIMBOLOS = 13;
+    private static final byte[] ALFABETO = "0123456789ABCDEFGHJKMNPQRSTVWXYZ*~$=U".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALORES = new byte[128];
+    
+    static {
+        Arrays.fill(VALORES, (byte) -1);
+        for (int i = 0; i < ALFABETO.length; i++) {
+            VALORES[ALFABETO[i]] = (byte) i;
+        }
+    }
+    
+    private final long no;
+    
+    /** Último milissegundo (desde a época) e sequência emitidos, em um único long. */
+    private final AtomicLong ultimo = new AtomicLong();
+    
+    public GeradorCodigoValidacao(@Value("${cnd.codigo.no:-1}") int no) {
+        if (no < 0) {
+            no = noPadrao();
+            log.warn("cnd.codigo.no não configurado; usando {} (derivado do host e PID). Configure um valor distinto por nó", no);
+        } else if (no > MAX_NO) {
+            throw new IllegalArgumentException("cnd.codigo.no deve estar entre 0 e " + MAX_NO);
+        }
+        this.no = no;
+    }
+    
+    public String gerar() {
+        return codificar(proximoId());
+    }
+    
+    /**
+     * Confere o formato e o símbolo de verificação, para recusar códigos
+     * digitados errado sem consultar o banco. Códigos no formato anterior
+     * ({@code CND} + 9 dígitos) são aceitos sem verificação.
+     */
+    public static boolean formatoValido(String codigo) {
+        if (codigo == null || !codigo.startsWith(PREFIXO)) {
+            return false;
+        }
+        if (codigo.length() == PREFIXO.length() + 9) {
+            for (int i = PREFIXO.length(); i < codigo.length(); i++) {
+                if (codigo.charAt(i) < '0' || codigo.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (codigo.length() != TAMANHO) {
+            return false;
+        }
+        
+        long valor = 0;
+        for (int i = PREFIXO.length(); i < PREFIXO.length() + SIMBOLOS; i++) {
+            int digito = valor(codigo.charAt(i));
+            if (digito < 0 || digito >= 32) {
+                return false;
+            }
+            valor = (valor << 5) | digito;
+        }
+        // O primeiro símbolo carrega só 3 bits; acima disso o valor transbordou
+        return valor(codigo.charAt(PREFIXO.length())) < 8
+            && valor(codigo.charAt(TAMANHO - 1)) == Long.remainderUnsigned(valor, 37);
+    }
+    
+    long proximoId() {
+        long atual;
+        long proximo;
+        do {
+            atual = ultimo.get();
+            long agora = (System.currentTimeMillis() - EPOCA_MS) << BITS_SEQUENCIA;
+            proximo = agora > atual ? agora : atual + 1;
+        } while (!ultimo.compareAndSet(atual, proximo));
+        
+        long milis = proximo >>> BITS_SEQUENCIA;
+        long sequencia = proximo & ((1L << BITS_SEQUENCIA) - 1);
+        return (milis << (BITS_NO + BITS_SEQUENCIA)) | (no << BITS_SEQUENCIA) | sequencia;
+    }
+    
+    static String codificar(long id) {
+        // Aloca o array de trabalho e a String, que copia o array (Latin-1 compacto)
+        byte[] codigo = new byte[TAMANHO];
+        codigo[0] = 'C';
+        codigo[1] = 'N';
+        codigo[2] = 'D';
+        long resto = id;
+        for (int i = PREFIXO.length() + SIMBOLOS - 1; i >= PREFIXO.length(); i--) {
+            codigo[i] = ALFABETO[(int) (resto & 31)];
+            resto >>>= 5;
+        }
+        codigo[TAMANHO - 1] = ALFABETO[(int) Long.remainderUnsigned(id, 37)];
+        return new String(codigo, StandardCharsets.ISO_8859_1);
+    }
+    
+    private static int noPadrao() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "desconhecido";
+        }
+        return (host + ":" + ProcessHandle.current().pid()).hashCode() & MAX_NO;
+    }
+    
+    private static int valor(char simbolo) {
+        return simbolo < 128 ? VALORES[simbolo] : -1;
+    }
+}
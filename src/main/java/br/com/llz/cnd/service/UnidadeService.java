@@ -1,114 +1,260 @@
 package br.com.llz.cnd.service;
 
+import br.com.llz.cnd.adimplencia.AdimplenciaService;
 import br.com.llz.cnd.dto.*;
-import br.com.llz.cnd.entity.UnidadeCnd;
-import br.com.llz.cnd.repository.UnidadeCndRepository;
-import br.com.llz.cnd.repository.UnidadeRepository;
-import lombok.RequiredArgsConstructor;
+import br.com.llz.cnd.metricas.EtapaEmissao;
+import br.com.llz.cnd.metricas.MetricasCnd;
+import br.com.llz.cnd.repository.UnidadeDadosResumo;
+import br.com.llz.cnd.storage.DocumentoGerado;
+import br.com.llz.cnd.storage.DocumentoStore;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class UnidadeService {
     
-    private final UnidadeRepository unidadeRepository;
-    private final UnidadeCndRepository cndRepository;
+    // CNDs vencidas ou com ERRO deixam de ocupar a chave (unidade, parâmetros)
+    static final String SQL_DESATIVAR_ANTERIORES =
+        "UPDATE unidade_cnd SET reg_ativo = false, dt_alteracao = now() " +
+        "WHERE unidade_id = ? AND hash_parametros = ? AND reg_ativo " +
+        "AND (dt_expiracao < now() OR status = 'ERRO')";
+    
+    // Idempotente: se já existe CND ativa para a chave (índice uk_unidade_hash_ativo), não insere
+    static final String SQL_INSERIR =
+        "INSERT INTO unidade_cnd (codigo_validacao, unidade_id, hash_parametros, status, canal_emissao, " +
+        "hash_documento_pdf, tamanho_documento_pdf, dt_criacao, dt_expiracao, ip_origem, reg_ativo, dt_alteracao) " +
+        "VALUES (?, ?, ?, 'PROCESSANDO', ?, ?, ?, ?, ?, ?, true, ?) " +
+        "ON CONFLICT DO NOTHING";
+    
+    // O hash devolvido é o do documento assinado, quando já existir
+    private static final String SQL_ATIVA =
+        "SELECT codigo_validacao, status, dt_criacao, dt_expiracao, " +
+        "COALESCE(hash_documento_assinado, hash_documento_pdf) AS hash_documento FROM unidade_cnd " +
+        "WHERE unidade_id = ? AND hash_parametros = ? AND reg_ativo";
+    
+    private static final String SQL_VALIDA = SQL_ATIVA + " AND dt_expiracao > now() AND status <> 'ERRO'";
+    
+    private static final RowMapper<CndEmitida> MAPEADOR_CND_EMITIDA = (rs, i) -> new CndEmitida(
+        rs.getString("codigo_validacao"), rs.getString("status"),
+        rs.getTimestamp("dt_criacao").toLocalDateTime(), rs.getTimestamp("dt_expiracao").toLocalDateTime(),
+        rs.getString("hash_documento"));
+    
+    private final AdimplenciaService adimplenciaService;
+    private final DadosUnidadeService dadosUnidadeService;
+    private final JdbcTemplate jdbcTemplate;
     private final CndPdfService cndPdfService;
-    private final CndAssinaturaService cndAssinaturaService;
     private final CndValidacaoService cndValidacaoService;
+    private final DocumentoStore documentoStore;
+    private final MetricasCnd metricas;
+    private final TransactionTemplate transacaoLeitura;
+    private final TransactionTemplate transacaoEscrita;
     
-    @Transactional
+    /** Emissões em andamento por hash dos parâmetros: pedidos idênticos aguardam a mesma. */
+    private final ConcurrentMap<String, CompletableFuture<UnidadeCndPdfResponse>> emissoesEmAndamento =
+        new ConcurrentHashMap<>();
+    
+    @Value("${cnd.expiracao.dias}")
+    private int expiracaoDias;
+    
+    @Value("${cnd.url.validacao}")
+    private String urlValidacao;
+    
+    public UnidadeService(AdimplenciaService adimplenciaService, DadosUnidadeService dadosUnidadeService,
+                          JdbcTemplate jdbcTemplate, CndPdfService cndPdfService,
+                          CndValidacaoService cndValidacaoService, DocumentoStore documentoStore,
+                          MetricasCnd metricas, PlatformTransactionManager transactionManager) {
+        this.adimplenciaService = adimplenciaService;
+        this.dadosUnidadeService = dadosUnidadeService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cndPdfService = cndPdfService;
+        this.cndValidacaoService = cndValidacaoService;
+        this.documentoStore = documentoStore;
+        this.metricas = metricas;
+        this.transacaoLeitura = new TransactionTemplate(transactionManager);
+        this.transacaoLeitura.setReadOnly(true);
+        this.transacaoEscrita = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Emite a CND para a unidade. Se já existe uma CND válida com os mesmos
+     * parâmetros, ela é devolvida sem gerar outro PDF; pedidos idênticos
+     * simultâneos (retentativas, duplo clique) aguardam uma única emissão.
+     */
     public UnidadeCndPdfResponse emitirCndPdf(Long unidadeId, UnidadeCndRequest request, String ip) {
-        // 1. Validar se unidade existe e está adimplente
-        var unidade = unidadeRepository.findByIdAndRegAtivoIsTrue(unidadeId)
-            .orElseThrow(() -> new RuntimeException("Unidade não encontrada"));
+        String hashParametros = calcularHashParametros(unidadeId, request);
+        
+        CompletableFuture<UnidadeCndPdfResponse> emissao = new CompletableFuture<>();
+        CompletableFuture<UnidadeCndPdfResponse> emAndamento = emissoesEmAndamento.putIfAbsent(hashParametros, emissao);
+        if (emAndamento != null) {
+            return aguardar(emAndamento);
+        }
         
-        boolean isAdimplente = unidadeRepository.isUnidadeAdimplente(unidadeId);
-        //isAdimplente = true;
-        if (!isAdimplente) {
-            throw new RuntimeException("Unidade possui débitos em aberto. CND não pode ser emitida.");
+        try {
+            UnidadeCndPdfResponse response = emitir(unidadeId, hashParametros, request, ip);
+            emissao.complete(response);
+            return response;
+        } catch (Throwable e) {
+            // Também Errors (OOM, StackOverflow na renderização): quem aguarda não pode ficar preso
+            emissao.completeExceptionally(e);
+            throw e;
+        } finally {
+            emissoesEmAndamento.remove(hashParametros, emissao);
+        }
+    }
+    
+    /**
+     * Emissão em três fases, sem manter uma conexão durante a renderização:
+     * leitura (unidade, adimplência e CND válida existente), geração do PDF e
+     * gravação. A gravação é idempotente por (unidade, parâmetros): se outra
+     * emissão ativa já existe, ela é devolvida e o PDF recém-gerado é descartado.
+     * Cada etapa numerada é medida no timer {@code cnd.emissao.etapa}.
+     */
+    private UnidadeCndPdfResponse emitir(Long unidadeId, String hashParametros, UnidadeCndRequest request, String ip) {
+        // 1. Leitura: unidade com os dados impressos, CND ainda válida e adimplência
+        LeituraEmissao leitura = transacaoLeitura.execute(status -> {
+            long inicio = System.nanoTime();
+            UnidadeDadosResumo unidade = dadosUnidadeService.buscar(unidadeId)
+                .orElseThrow(() -> new RuntimeException("Unidade não encontrada"));
+            inicio = metricas.registrar(EtapaEmissao.UNIDADE, inicio);
+            
+            Optional<CndEmitida> existente = jdbcTemplate.query(SQL_VALIDA, MAPEADOR_CND_EMITIDA, unidadeId, hashParametros)
+                .stream().findFirst();
+            inicio = metricas.registrar(EtapaEmissao.REAPROVEITAMENTO, inicio);
+            if (existente.isPresent()) {
+                return new LeituraEmissao(unidade, existente.get());
+            }
+            
+            boolean isAdimplente = adimplenciaService.isAdimplente(unidadeId);
+            metricas.registrar(EtapaEmissao.ADIMPLENCIA, inicio);
+            if (!isAdimplente) {
+                throw new RuntimeException("Unidade possui débitos em aberto. CND não pode ser emitida.");
+            }
+            return new LeituraEmissao(unidade, null);
+        });
+        if (leitura.valida() != null) {
+            log.debug("Reaproveitando CND {} da unidade {}", leitura.valida().codigoValidacao(), unidadeId);
+            metricas.registrarEmissao(true);
+            return montarResponse(leitura.valida());
         }
         
-        // 2. Validar anti-fraude
+        // 2. Validar anti-fraude (em memória)
+        long inicio = System.nanoTime();
         cndValidacaoService.validarAntiFraude(unidadeId, request, ip);
+        inicio = metricas.registrar(EtapaEmissao.ANTIFRAUDE, inicio);
         
         // 3. Gerar código único
         String codigo = cndValidacaoService.gerarCodigoValidacao();
+        inicio = metricas.registrar(EtapaEmissao.CODIGO, inicio);
         
-        // 4. Coletar dados da unidade (simulando dados reais)
-        UnidadeCndData dadosUnidade = coletarDadosUnidade(unidade.getId(), request);
-        
-        // 5. Gerar PDF
-        byte[] pdf = cndPdfService.gerarPdf(dadosUnidade, codigo);
-        
-        // 6. Salvar registro
-        UnidadeCnd cnd = salvarCndEmitida(unidadeId, request, codigo, pdf, ip);
+        // 4. Dados impressos na CND
+        String validade = LocalDateTime.now().plusDays(expiracaoDias).format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+        UnidadeCndData dadosUnidade = dadosUnidadeService.montar(leitura.unidade(), request, validade);
+        inicio = metricas.registrar(EtapaEmissao.DADOS, inicio);
         
-        // 7. Enviar para assinatura (assíncrono)
-        cndAssinaturaService.processarAssinaturaAsync(cnd.getId());
+        // 5. Gerar e armazenar o PDF, sem conexão com o banco
+        DocumentoGerado pdf = cndPdfService.gerarDocumento(dadosUnidade, codigo);
+        inicio = metricas.registrar(EtapaEmissao.PDF, inicio);
+        metricas.registrarPdf(pdf.tamanho());
+        String hashDocumento = documentoStore.salvar(pdf);
+        inicio = metricas.registrar(EtapaEmissao.ARMAZENAMENTO, inicio);
         
+        // 6. Gravação (a assinatura é feita em lote pelo CndAssinaturaService)
+        CndEmitida cnd = salvarCndEmitida(unidadeId, hashParametros, request, codigo, hashDocumento, pdf.tamanho(), ip);
+        metricas.registrar(EtapaEmissao.GRAVACAO, inicio);
+        metricas.registrarEmissao(!codigo.equals(cnd.codigoValidacao()));
+        if (!codigo.equals(cnd.codigoValidacao())) {
+            log.info("CND {} já ativa para a unidade {} com os mesmos parâmetros; descartando {}",
+                cnd.codigoValidacao(), unidadeId, codigo);
+            documentoStore.remover(hashDocumento);
+        }
+        return montarResponse(cnd);
+    }
+    
+    private UnidadeCndPdfResponse montarResponse(CndEmitida cnd) {
         return UnidadeCndPdfResponse.builder()
-            .codigoValidacao(codigo)
-            .status("PROCESSANDO")
-            .dataEmissao(LocalDateTime.now())
-            .dataExpiracao(LocalDateTime.now().plusDays(30))
-            .urlValidacao("http://localhost:8080/api/cnd/validar/" + codigo)
-            .hashDocumento(cndPdfService.calcularHashDocumento(pdf))
+            .codigoValidacao(cnd.codigoValidacao())
+            .status(cnd.status())
+            .dataEmissao(cnd.dtCriacao())
+            .dataExpiracao(cnd.dtExpiracao())
+            .urlValidacao(urlValidacao + "/" + cnd.codigoValidacao())
+            .hashDocumento(cnd.hashDocumento())
             .build();
     }
     
-    private UnidadeCndData coletarDadosUnidade(Long unidadeId, UnidadeCndRequest request) {
-        // Simulando dados reais - em produção viria do banco
-        List<String> datasVencimento = request.getComPeriodo() ? 
-            Arrays.asList("01/01/2024", "01/02/2024", "01/03/2024") : null;
-        
-        return UnidadeCndData.builder()
-            .nomeCondominio("Condomínio Residencial Jardim das Flores")
-            .logradouro("Rua das Flores")
-            .numero("123")
-            .bairro("Centro")
-            .cidade("Belo Horizonte")
-            .uf("MG")
-            .cep("30112-000")
-            .unidadeCodigo("101")
-            .bloco("A")
-            .validadeDocumento(LocalDateTime.now().plusDays(30).format(DateTimeFormatter.ofPattern("dd/MM/yyyy")))
-            .usuario("Sistema Automatizado")
-            .dataVencimento(datasVencimento)
-            .comPeriodo(request.getComPeriodo())
-            .build();
+    private static UnidadeCndPdfResponse aguardar(CompletableFuture<UnidadeCndPdfResponse> emissao) {
+        try {
+            return emissao.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
     }
     
-    private UnidadeCnd salvarCndEmitida(Long unidadeId, UnidadeCndRequest request, String codigo, byte[] pdf, String ip) {
-        String hashParametros = DigestUtils.sha256Hex(unidadeId + "|" + request.getComPeriodo() + "|" + request.getComAssinatura());
-        
-        UnidadeCnd cnd = new UnidadeCnd();
-        cnd.setCodigoValidacao(codigo);
-        cnd.setUnidadeId(unidadeId);
-        cnd.setHashParametros(hashParametros);
-        cnd.setStatus("PROCESSANDO");
-        cnd.setCanalEmissao(request.getCanalEmissao());
-        cnd.setDocumentoPdf(pdf);
-        cnd.setDtExpiracao(LocalDateTime.now().plusDays(30));
-        cnd.setIpOrigem(ip);
+    /** Chave anti-duplicidade da emissão: unidade + parâmetros. */
+    static String calcularHashParametros(Long unidadeId, UnidadeCndRequest request) {
+        return DigestUtils.sha256Hex(unidadeId + "|" + request.getComPeriodo() + "|" + request.getComAssinatura());
+    }
+    
+    private CndEmitida salvarCndEmitida(Long unidadeId, String hashParametros, UnidadeCndRequest request, String codigo,
+                                        String hashDocumento, long tamanho, String ip) {
+        LocalDateTime agora = LocalDateTime.now();
+        LocalDateTime expiracao = agora.plusDays(expiracaoDias);
         
-        return cndRepository.save(cnd);
+        return transacaoEscrita.execute(status -> {
+            jdbcTemplate.update(SQL_DESATIVAR_ANTERIORES, unidadeId, hashParametros);
+            
+            List<String> inseridas = jdbcTemplate.queryForList(SQL_INSERIR + " RETURNING codigo_validacao", String.class,
+                codigo, unidadeId, hashParametros, request.getCanalEmissao(), hashDocumento, tamanho,
+                Timestamp.valueOf(agora), Timestamp.valueOf(expiracao), ip, Timestamp.valueOf(agora));
+            if (!inseridas.isEmpty()) {
+                return new CndEmitida(codigo, "PROCESSANDO", agora, expiracao, hashDocumento);
+            }
+            
+            return jdbcTemplate.query(SQL_ATIVA, MAPEADOR_CND_EMITIDA, unidadeId, hashParametros).stream()
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Conflito ao gravar a CND " + codigo));
+        });
     }
     
     public CndValidacaoResponse validarCnd(String codigo) {
         return cndValidacaoService.validarPorCodigo(codigo);
     }
     
-    public byte[] downloadCnd(String codigo) {
-        return cndValidacaoService.obterDocumentoAssinado(codigo);
+    public DocumentoCnd localizarDocumentoCnd(String codigo) {
+        return cndValidacaoService.localizarDocumento(codigo);
+    }
+    
+    public boolean validarHash(String codigo, String hash) {
+        return cndValidacaoService.validarHash(codigo, hash);
+    }
+    
+    public List<ValidacaoHashResponse> validarHashes(List<ValidacaoHashRequest> itens) {
+        return cndValidacaoService.validarHashes(itens);
+    }
+    
+    private record LeituraEmissao(UnidadeDadosResumo unidade, CndEmitida valida) {
+    }
+    
+    private record CndEmitida(String codigoValidacao, String status, LocalDateTime dtCriacao,
+                              LocalDateTime dtExpiracao, String hashDocumento) {
     }
 }
\ No newline at end of file
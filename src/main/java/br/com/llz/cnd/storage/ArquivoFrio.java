@@ -0,0 +1,28 @@
+package br.com.llz.cnd.storage;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Armazenamento frio dos documentos de CNDs inativas (vencidas ou
+ * substituídas), que quase nunca são baixadas. Usa a mesma chave do
+ * {@link DocumentoStore} (SHA-256 do conteúdo original) e guarda o documento
+ * comprimido; a leitura devolve o conteúdo original.
+ */
+public interface ArquivoFrio {
+    
+    /**
+     * Grava o documento, se ainda não existir. Só retorna depois que o
+     * documento estiver completo no armazenamento.
+     */
+    void arquivar(String hash, byte[] conteudo);
+    
+    /**
+     * Copia o trecho {@code [inicio, inicio + quantidade)} do conteúdo original
+     * para o canal de destino.
+     *
+     * @throws DocumentoNaoEncontradoException se o hash não existir no arquivo
+     */
+    void transferir(String hash, long inicio, long quantidade, WritableByteChannel destino);
+    
+    boolean existe(String hash);
+}
@@ -0,0 +1,11 @@
+package br.com.llz.cnd.storage;
+
+/**
+ * Documento recém-gerado com o SHA-256 (hex) calculado durante a escrita.
+ */
+public record DocumentoGerado(byte[] conteudo, String hash) {
+    
+    public int tamanho() {
+        return conteudo.length;
+    }
+}
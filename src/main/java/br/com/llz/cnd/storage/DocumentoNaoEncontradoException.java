@@ -0,0 +1,8 @@
+package br.com.llz.cnd.storage;
+
+public class DocumentoNaoEncontradoException extends RuntimeException {
+    
+    public DocumentoNaoEncontradoException(String hash) {
+        super("Documento não encontrado no armazenamento: " + hash);
+    }
+}
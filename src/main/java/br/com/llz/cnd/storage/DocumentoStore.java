@@ -0,0 +1,64 @@
+package br.com.llz.cnd.storage;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Armazenamento de documentos endereçado por conteúdo: a chave de cada
+ * documento é o SHA-256 (hex) dos seus bytes. Documentos iguais são gravados
+ * uma única vez.
+ */
+public interface DocumentoStore {
+    
+    /**
+     * Grava o documento, se ainda não existir, e retorna o seu hash.
+     */
+    default String salvar(byte[] conteudo) {
+        return salvar(new DocumentoGerado(conteudo, DigestUtils.sha256Hex(conteudo)));
+    }
+    
+    /**
+     * Grava o documento com o hash calculado na escrita ({@link SaidaComHash}),
+     * sem percorrer o conteúdo de novo, e retorna o hash. O hash deve ser o
+     * SHA-256 do conteúdo.
+     */
+    String salvar(DocumentoGerado documento);
+    
+    /**
+     * Retorna o conteúdo do documento como um buffer somente leitura.
+     *
+     * @throws DocumentoNaoEncontradoException se o hash não existir no store
+     */
+    ByteBuffer ler(String hash);
+    
+    /**
+     * Copia o trecho {@code [inicio, inicio + quantidade)} do documento para o
+     * canal de destino, sem carregar o documento inteiro no heap.
+     *
+     * @throws DocumentoNaoEncontradoException se o hash não existir no store
+     */
+    void transferir(String hash, long inicio, long quantidade, WritableByteChannel destino);
+    
+    boolean existe(String hash);
+    
+    void remover(String hash);
+    
+    /**
+     * Arquivo local com o conteúdo do documento, quando o store grava em disco.
+     * Permite que o servidor envie o arquivo direto do kernel (sendfile).
+     */
+    default Optional<Path> arquivo(String hash) {
+        return Optional.empty();
+    }
+    
+    default byte[] lerBytes(String hash) {
+        ByteBuffer buffer = ler(hash);
+        byte[] conteudo = new byte[buffer.remaining()];
+        buffer.get(conteudo);
+        return conteudo;
+    }
+}
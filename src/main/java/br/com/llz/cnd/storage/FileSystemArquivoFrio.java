@@ -0,0 +1,116 @@
+package br.com.llz.cnd.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link ArquivoFrio} em disco local, no lugar de um bucket de armazenamento
+ * frio. Os documentos ficam em {@code <diretorio>/<hash[0..2]>/<hash[2..4]>/<hash>.gz},
+ * comprimidos com gzip no nível máximo.
+ */
+@Component
+@ConditionalOnProperty(name = "cnd.documentos.frio.store", havingValue = "filesystem", matchIfMissing = true)
+@Slf4j
+public class FileSystemArquivoFrio implements ArquivoFrio {
+    
+    private static final Pattern HASH_VALIDO = Pattern.compile("[0-9a-f]{64}");
+    
+    private static final int TAMANHO_BUFFER = 8192;
+    
+    private final Path diretorio;
+    
+    public FileSystemArquivoFrio(@Value("${cnd.documentos.frio.diretorio}") String diretorio) {
+        this.diretorio = Path.of(diretorio).toAbsolutePath();
+        try {
+            Files.createDirectories(this.diretorio);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível criar o diretório do arquivo frio: " + this.diretorio, e);
+        }
+        log.info("Arquivo frio de documentos em {}", this.diretorio);
+    }
+    
+    @Override
+    public void arquivar(String hash, byte[] conteudo) {
+        Path destino = caminho(hash);
+        if (Files.exists(destino)) {
+            return;
+        }
+        
+        try {
+            Files.createDirectories(destino.getParent());
+            // Grava em arquivo temporário e move, para nunca expor um documento pela metade
+            Path temporario = Files.createTempFile(destino.getParent(), hash, ".tmp");
+            try {
+                try (OutputStream saida = new GZIPOutputStream(Files.newOutputStream(temporario), TAMANHO_BUFFER) {
+                    {
+                        def.setLevel(Deflater.BEST_COMPRESSION);
+                    }
+                }) {
+                    saida.write(conteudo);
+                }
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Outro nó arquivou o mesmo documento ao mesmo tempo
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao arquivar documento " + hash, e);
+        }
+    }
+    
+    @Override
+    public void transferir(String hash, long inicio, long quantidade, WritableByteChannel destino) {
+        try (InputStream entrada = new GZIPInputStream(Files.newInputStream(caminho(hash)), TAMANHO_BUFFER)) {
+            // Sem acesso aleatório no gzip: o início do trecho é descomprimido e descartado
+            entrada.skipNBytes(inicio);
+            byte[] buffer = new byte[TAMANHO_BUFFER];
+            long restante = quantidade;
+            while (restante > 0) {
+                int lidos = entrada.read(buffer, 0, (int) Math.min(buffer.length, restante));
+                if (lidos < 0) {
+                    throw new IOException("Documento arquivado menor que o esperado");
+                }
+                ByteBuffer trecho = ByteBuffer.wrap(buffer, 0, lidos);
+                while (trecho.hasRemaining()) {
+                    destino.write(trecho);
+                }
+                restante -= lidos;
+            }
+        } catch (NoSuchFileException e) {
+            throw new DocumentoNaoEncontradoException(hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao transferir documento arquivado " + hash, e);
+        }
+    }
+    
+    @Override
+    public boolean existe(String hash) {
+        return Files.exists(caminho(hash));
+    }
+    
+    private Path caminho(String hash) {
+        if (hash == null || !HASH_VALIDO.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Hash de documento inválido: " + hash);
+        }
+        return diretorio.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + ".gz");
+    }
+}
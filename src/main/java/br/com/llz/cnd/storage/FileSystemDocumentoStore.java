@@ -0,0 +1,128 @@
+package br.com.llz.cnd.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * {@link DocumentoStore} em disco local. Os arquivos ficam em
+ * {@code <diretorio>/<hash[0..2]>/<hash[2..4]>/<hash>} e a leitura é feita por
+ * mapeamento em memória, sem copiar o documento para o heap.
+ */
+@Component
+@ConditionalOnProperty(name = "cnd.documentos.store", havingValue = "filesystem", matchIfMissing = true)
+@Slf4j
+public class FileSystemDocumentoStore implements DocumentoStore {
+    
+    private static final Pattern HASH_VALIDO = Pattern.compile("[0-9a-f]{64}");
+    
+    private final Path diretorio;
+    
+    public FileSystemDocumentoStore(@Value("${cnd.documentos.diretorio}") String diretorio) {
+        this.diretorio = Path.of(diretorio).toAbsolutePath();
+        try {
+            Files.createDirectories(this.diretorio);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível criar o diretório de documentos: " + this.diretorio, e);
+        }
+        log.info("Armazenamento de documentos em {}", this.diretorio);
+    }
+    
+    @Override
+    public String salvar(DocumentoGerado documento) {
+        String hash = documento.hash();
+        Path destino = caminho(hash);
+        if (Files.exists(destino)) {
+            return hash;
+        }
+        
+        try {
+            Files.createDirectories(destino.getParent());
+            // Grava em arquivo temporário e move, para nunca expor um documento pela metade
+            Path temporario = Files.createTempFile(destino.getParent(), hash, ".tmp");
+            try {
+                Files.write(temporario, documento.conteudo());
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Outro processo gravou o mesmo conteúdo ao mesmo tempo
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar documento " + hash, e);
+        }
+    }
+    
+    @Override
+    public ByteBuffer ler(String hash) {
+        try (FileChannel channel = FileChannel.open(caminho(hash), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            throw new DocumentoNaoEncontradoException(hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler documento " + hash, e);
+        }
+    }
+    
+    @Override
+    public void transferir(String hash, long inicio, long quantidade, WritableByteChannel destino) {
+        try (FileChannel channel = FileChannel.open(caminho(hash), StandardOpenOption.READ)) {
+            long posicao = inicio;
+            long fim = inicio + quantidade;
+            while (posicao < fim) {
+                long transferidos = channel.transferTo(posicao, fim - posicao, destino);
+                if (transferidos <= 0) {
+                    throw new IOException("Transferência interrompida na posição " + posicao);
+                }
+                posicao += transferidos;
+            }
+        } catch (NoSuchFileException e) {
+            throw new DocumentoNaoEncontradoException(hash);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao transferir documento " + hash, e);
+        }
+    }
+    
+    @Override
+    public Optional<Path> arquivo(String hash) {
+        Path arquivo = caminho(hash);
+        return Files.isRegularFile(arquivo) ? Optional.of(arquivo) : Optional.empty();
+    }
+    
+    @Override
+    public boolean existe(String hash) {
+        return Files.exists(caminho(hash));
+    }
+    
+    @Override
+    public void remover(String hash) {
+        try {
+            Files.deleteIfExists(caminho(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao remover documento " + hash, e);
+        }
+    }
+    
+    private Path caminho(String hash) {
+        if (hash == null || !HASH_VALIDO.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Hash de documento inválido: " + hash);
+        }
+        return diretorio.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+}
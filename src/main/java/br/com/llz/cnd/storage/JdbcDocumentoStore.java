@@ -0,0 +1,78 @@
+package br.com.llz.cnd.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * {@link DocumentoStore} na tabela documento_cnd do próprio Postgres, para
+ * ambientes sem disco persistente. Trechos são lidos com substring no banco, de
+ * modo que um download parcial só trafega os bytes pedidos.
+ */
+@Component
+@ConditionalOnProperty(name = "cnd.documentos.store", havingValue = "jdbc")
+@RequiredArgsConstructor
+public class JdbcDocumentoStore implements DocumentoStore {
+    
+    private static final String SQL_INSERIR =
+        "INSERT INTO documento_cnd (hash, tamanho, conteudo) VALUES (?, ?, ?) ON CONFLICT (hash) DO NOTHING";
+    
+    private static final String SQL_LER = "SELECT conteudo FROM documento_cnd WHERE hash = ?";
+    
+    private static final String SQL_TRECHO = "SELECT substring(conteudo FROM ? FOR ?) FROM documento_cnd WHERE hash = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public String salvar(DocumentoGerado documento) {
+        jdbcTemplate.update(SQL_INSERIR, documento.hash(), (long) documento.tamanho(), documento.conteudo());
+        return documento.hash();
+    }
+    
+    @Override
+    public ByteBuffer ler(String hash) {
+        List<byte[]> conteudo = jdbcTemplate.query(SQL_LER, (rs, i) -> rs.getBytes(1), hash);
+        if (conteudo.isEmpty()) {
+            throw new DocumentoNaoEncontradoException(hash);
+        }
+        return ByteBuffer.wrap(conteudo.get(0)).asReadOnlyBuffer();
+    }
+    
+    @Override
+    public void transferir(String hash, long inicio, long quantidade, WritableByteChannel destino) {
+        Boolean encontrado = jdbcTemplate.query(SQL_TRECHO, rs -> {
+            if (!rs.next()) {
+                return false;
+            }
+            try (InputStream trecho = rs.getBinaryStream(1)) {
+                trecho.transferTo(Channels.newOutputStream(destino));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Erro ao transferir documento " + hash, e);
+            }
+            return true;
+        }, Math.toIntExact(inicio + 1), Math.toIntExact(quantidade), hash);
+        
+        if (!Boolean.TRUE.equals(encontrado)) {
+            throw new DocumentoNaoEncontradoException(hash);
+        }
+    }
+    
+    @Override
+    public boolean existe(String hash) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM documento_cnd WHERE hash = ?", Integer.class, hash).isEmpty();
+    }
+    
+    @Override
+    public void remover(String hash) {
+        jdbcTemplate.update("DELETE FROM documento_cnd WHERE hash = ?", hash);
+    }
+}
@@ -0,0 +1,97 @@
+package br.com.llz.cnd.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Move para o {@link DocumentoStore} os PDFs de bancos anteriores ao store, que
+ * ainda estão nas colunas BYTEA documento_pdf/documento_assinado. Roda uma vez
+ * após a inicialização, em lotes por id, e não faz nada se as colunas legadas
+ * não existirem.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MigracaoDocumentosLegados {
+    
+    private static final String SQL_COLUNA_LEGADA =
+        "SELECT COUNT(*) FROM information_schema.columns " +
+        "WHERE table_name = 'unidade_cnd' AND column_name = 'documento_pdf'";
+    
+    private static final String SQL_LOTE =
+        "SELECT id, documento_pdf, documento_assinado FROM unidade_cnd " +
+        "WHERE id > ? AND (documento_pdf IS NOT NULL OR documento_assinado IS NOT NULL) " +
+        "ORDER BY id LIMIT ?";
+    
+    private static final String SQL_MIGRAR =
+        "UPDATE unidade_cnd SET " +
+        "hash_documento_pdf = COALESCE(?, hash_documento_pdf), tamanho_documento_pdf = COALESCE(?, tamanho_documento_pdf), " +
+        "hash_documento_assinado = COALESCE(?, hash_documento_assinado), " +
+        "tamanho_documento_assinado = COALESCE(?, tamanho_documento_assinado), " +
+        "documento_pdf = NULL, documento_assinado = NULL WHERE id = ?";
+    
+    private static final int TAMANHO_LOTE = 100;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final DocumentoStore documentoStore;
+    
+    @Value("${cnd.documentos.migrar-legado:true}")
+    private boolean habilitada;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrar() {
+        if (!habilitada || !possuiColunasLegadas()) {
+            return;
+        }
+        
+        long ultimoId = 0;
+        int migrados = 0;
+        List<DocumentoLegado> lote;
+        do {
+            lote = jdbcTemplate.query(SQL_LOTE, (rs, i) -> new DocumentoLegado(
+                rs.getLong("id"), rs.getBytes("documento_pdf"), rs.getBytes("documento_assinado")),
+                ultimoId, TAMANHO_LOTE);
+            
+            for (DocumentoLegado documento : lote) {
+                jdbcTemplate.update(SQL_MIGRAR,
+                    salvar(documento.pdf()), tamanho(documento.pdf()),
+                    salvar(documento.assinado()), tamanho(documento.assinado()),
+                    documento.id());
+                ultimoId = documento.id();
+            }
+            migrados += lote.size();
+        } while (lote.size() == TAMANHO_LOTE);
+        
+        if (migrados > 0) {
+            log.info("{} CNDs tiveram os documentos migrados para o armazenamento de documentos", migrados);
+        }
+    }
+    
+    private boolean possuiColunasLegadas() {
+        try {
+            Integer colunas = jdbcTemplate.queryForObject(SQL_COLUNA_LEGADA, Integer.class);
+            return colunas != null && colunas > 0;
+        } catch (Exception e) {
+            log.warn("Não foi possível verificar colunas legadas de documentos: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    private String salvar(byte[] conteudo) {
+        return conteudo != null ? documentoStore.salvar(conteudo) : null;
+    }
+    
+    private static Long tamanho(byte[] conteudo) {
+        return conteudo != null ? (long) conteudo.length : null;
+    }
+    
+    private record DocumentoLegado(long id, byte[] pdf, byte[] assinado) {
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.llz.cnd.storage;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.security.DigestOutputStream;
+
+/**
+ * Saída em memória que calcula o SHA-256 no mesmo passo da escrita: o
+ * documento gerado vai para o {@link DocumentoStore} sem ser percorrido de
+ * novo para obter a chave.
+ */
+public final class SaidaComHash extends DigestOutputStream {
+    
+    private final ByteArrayOutputStream buffer;
+    
+    public SaidaComHash(int tamanhoInicial) {
+        this(new ByteArrayOutputStream(tamanhoInicial));
+    }
+    
+    private SaidaComHash(ByteArrayOutputStream buffer) {
+        super(buffer, DigestUtils.getSha256Digest());
+        this.buffer = buffer;
+    }
+    
+    /** Conteúdo escrito e o seu hash; chamar uma única vez, ao fim da escrita. */
+    public DocumentoGerado concluir() {
+        return new DocumentoGerado(buffer.toByteArray(), Hex.encodeHexString(getMessageDigest().digest()));
+    }
+}
@@ -0,0 +1,85 @@
+package br.com.llz.cnd.adimplencia;
+
+import br.com.llz.cnd.repository.UnidadeRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Reconstrução e carga do índice de adimplência contra um PostgreSQL
+ * embarcado com o {@code scripts/init.sql} (8 unidades ativas): situações
+ * gravadas pelos eventos não são sobrescritas pela regra de unidade ativa.
+ */
+class AdimplenciaServiceTest {
+    
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    
+    @BeforeAll
+    static void iniciarBanco() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        jdbcTemplate.execute(Files.readString(Path.of("scripts/init.sql")));
+    }
+    
+    @AfterAll
+    static void pararBanco() throws Exception {
+        postgres.close();
+    }
+    
+    @BeforeEach
+    void limparSituacoes() {
+        jdbcTemplate.update("DELETE FROM unidade_adimplencia");
+    }
+    
+    @Test
+    void reconstrucaoMantemInadimplenciaDosEventos() {
+        AdimplenciaService service = novoService();
+        service.registrar(new AdimplenciaAlterada(1L, false));
+        
+        service.reconstruir();
+        
+        // A unidade 1 continua ativa, mas a situação do evento prevalece; as demais são materializadas
+        assertThat(situacao(1L)).isFalse();
+        assertThat(situacao(2L)).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM unidade_adimplencia", Integer.class))
+            .isEqualTo(8);
+        assertThat(service.isAdimplente(1L)).isFalse();
+        assertThat(service.isAdimplente(2L)).isTrue();
+    }
+    
+    @Test
+    void primeiraAtualizacaoSoCarregaOIndice() {
+        // Gravada por um evento em outro nó antes da subida deste
+        jdbcTemplate.update("INSERT INTO unidade_adimplencia (unidade_id, adimplente) VALUES (3, false)");
+        AdimplenciaService service = novoService();
+        
+        service.atualizar();
+        
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM unidade_adimplencia", Integer.class))
+            .isEqualTo(1);
+        assertThat(situacao(3L)).isFalse();
+        assertThat(service.isAdimplente(3L)).isFalse();
+    }
+    
+    private static AdimplenciaService novoService() {
+        AdimplenciaService service = new AdimplenciaService(jdbcTemplate, mock(UnidadeRepository.class));
+        ReflectionTestUtils.setField(service, "maxDefasagemSegundos", 60L);
+        return service;
+    }
+    
+    private static Boolean situacao(Long unidadeId) {
+        return jdbcTemplate.queryForObject(
+            "SELECT adimplente FROM unidade_adimplencia WHERE unidade_id = ?", Boolean.class, unidadeId);
+    }
+}
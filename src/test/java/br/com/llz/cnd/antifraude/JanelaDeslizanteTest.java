@@ -0,0 +1,115 @@
+package br.com.llz.cnd.antifraude;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Janela de 60 s em 6 buckets de 10 s; o relógio é o parâmetro {@code agoraMs}.
+ */
+class JanelaDeslizanteTest {
+    
+    private static final long JANELA_MS = 60_000;
+    private static final int BUCKETS = 6;
+    private static final int LIMITE = 3;
+    
+    private final JanelaDeslizante janela = new JanelaDeslizante(JANELA_MS, BUCKETS);
+    
+    @Test
+    void limiteAtingidoELiberadoQuandoAJanelaDesliza() {
+        assertThat(janela.tentar(1, LIMITE, 0)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 1_000)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 2_000)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 3_000)).isFalse();
+        // Ainda no último bucket da janela
+        assertThat(janela.tentar(1, LIMITE, JANELA_MS - 1)).isFalse();
+        
+        assertThat(janela.tentar(1, LIMITE, JANELA_MS)).isTrue();
+    }
+    
+    @Test
+    void deslizamentoParcialSoLimpaOsBucketsExpirados() {
+        assertThat(janela.tentar(1, LIMITE, 0)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 0)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 30_000)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 35_000)).isFalse();
+        
+        // Em 60 s sai o bucket 0 (duas tentativas); a de 30 s continua contando
+        assertThat(janela.tentar(1, LIMITE, 60_000)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 60_000)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 60_000)).isFalse();
+        
+        // Em 90 s sai também o bucket de 30 s
+        assertThat(janela.tentar(1, LIMITE, 90_000)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 90_000)).isFalse();
+    }
+    
+    @Test
+    void redimensionamentoDescartaChavesExpiradasEMantemAsAtivas() {
+        int expiradas = 5_000;
+        for (long chave = 0; chave < expiradas; chave++) {
+            janela.tentar(chave, LIMITE, 0);
+        }
+        long ativa = -1;
+        janela.tentar(ativa, LIMITE, 50_000);
+        janela.tentar(ativa, LIMITE, 50_000);
+        assertThat(janela.tamanho()).isEqualTo(expiradas + 1);
+        
+        // Novas chaves depois que as primeiras saíram da janela: cada listra cresce e descarta as expiradas
+        int novas = 3 * expiradas;
+        for (long chave = expiradas; chave < expiradas + novas; chave++) {
+            janela.tentar(chave, LIMITE, 70_000);
+        }
+        assertThat(janela.tamanho()).isEqualTo(novas + 1);
+        
+        // A contagem da chave ativa sobreviveu à cópia: resta uma tentativa
+        assertThat(janela.tentar(ativa, LIMITE, 70_000)).isTrue();
+        assertThat(janela.tentar(ativa, LIMITE, 70_000)).isFalse();
+        // E as expiradas voltam com a janela zerada
+        assertThat(janela.tentar(0, 1, 70_000)).isTrue();
+    }
+    
+    @Test
+    void devolucaoLiberaUmaTentativaMesmoDepoisDaViradaDoBucket() {
+        assertThat(janela.tentar(1, LIMITE, 0)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 0)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 5_000)).isTrue();
+        
+        // A tentativa foi contada no bucket 0 e é devolvida já no bucket seguinte
+        janela.devolver(1, 15_000);
+        assertThat(janela.tentar(1, LIMITE, 15_000)).isTrue();
+        assertThat(janela.tentar(1, LIMITE, 15_000)).isFalse();
+        
+        // Chave desconhecida: nada a devolver, e nenhuma chave é criada
+        janela.devolver(2, 15_000);
+        assertThat(janela.tamanho()).isEqualTo(1);
+    }
+    
+    @Test
+    void chavesNoMesmoSlotDaMesmaListraContamSeparadas() {
+        long primeira = 1;
+        long colidente = colidente(primeira);
+        
+        for (int i = 0; i < LIMITE; i++) {
+            assertThat(janela.tentar(primeira, LIMITE, 0)).isTrue();
+        }
+        assertThat(janela.tentar(primeira, LIMITE, 0)).isFalse();
+        
+        for (int i = 0; i < LIMITE; i++) {
+            assertThat(janela.tentar(colidente, LIMITE, 0)).isTrue();
+        }
+        assertThat(janela.tentar(colidente, LIMITE, 0)).isFalse();
+        assertThat(janela.tamanho()).isEqualTo(2);
+    }
+    
+    /** Outra chave com a mesma listra e o mesmo slot inicial na tabela de 64 posições. */
+    private static long colidente(long chave) {
+        long hash = JanelaDeslizante.misturar(chave);
+        for (long candidata = chave + 1; ; candidata++) {
+            long outro = JanelaDeslizante.misturar(candidata);
+            if (outro >>> 58 == hash >>> 58 && (outro & 63) == (hash & 63)) {
+                return candidata;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package br.com.llz.cnd.service;
+
+import br.com.llz.cnd.config.PermissoesBancoDataSource;
+import br.com.llz.cnd.storage.ArquivoFrio;
+import br.com.llz.cnd.storage.DocumentoStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CicloVidaCndServiceTest {
+    
+    /** Com threads virtuais o DataSource vem encapsulado nas permissões de banco e a fila fica no semáforo. */
+    @Test
+    void paraEnquantoAsPermissoesDeBancoEstaoEsgotadas() throws Exception {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocacao -> mock(Connection.class));
+        PermissoesBancoDataSource permissoes = new PermissoesBancoDataSource(pool, 1, 1000);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        CicloVidaCndService service = novoService(jdbcTemplate, permissoes);
+        
+        try (Connection emUso = permissoes.getConnection()) {
+            service.executar();
+            
+            // As três etapas param antes do primeiro lote
+            verifyNoInteractions(jdbcTemplate);
+            assertThat(service.estatisticas().interrupcoes()).isEqualTo(3);
+        }
+        
+        service.executar();
+        assertThat(service.estatisticas().interrupcoes()).isEqualTo(3);
+        assertThat(mockingDetails(jdbcTemplate).getInvocations()).hasSize(3);
+    }
+    
+    private static CicloVidaCndService novoService(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        CicloVidaCndService service = new CicloVidaCndService(jdbcTemplate, mock(DocumentoStore.class),
+            mock(ArquivoFrio.class), mock(CndValidacaoService.class), dataSource);
+        ReflectionTestUtils.setField(service, "habilitado", true);
+        ReflectionTestUtils.setField(service, "tamanhoLote", 100);
+        ReflectionTestUtils.setField(service, "maxPorExecucao", 1000);
+        return service;
+    }
+}
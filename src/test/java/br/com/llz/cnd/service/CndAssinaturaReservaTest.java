@@ -0,0 +1,157 @@
+package br.com.llz.cnd.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Semântica de reserva da fila de assinatura ({@link CndAssinaturaService})
+ * contra um PostgreSQL embarcado com o {@code scripts/init.sql}: nós
+ * concorrentes reservam linhas disjuntas, leases vencidos voltam para a fila
+ * e a gravação de um nó que perdeu o lease é descartada.
+ */
+class CndAssinaturaReservaTest {
+    
+    private static final int LEASE_SEGUNDOS = 300;
+    private static final int MAX_TENTATIVAS = 3;
+    private static final int RETRY_SEGUNDOS = 60;
+    
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    
+    @BeforeAll
+    static void iniciarBanco() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        jdbcTemplate.execute(Files.readString(Path.of("scripts/init.sql")));
+    }
+    
+    @AfterAll
+    static void pararBanco() throws Exception {
+        postgres.close();
+    }
+    
+    @BeforeEach
+    void popularFila() {
+        jdbcTemplate.update("DELETE FROM unidade_cnd");
+        for (int i = 1; i <= 6; i++) {
+            jdbcTemplate.update("INSERT INTO unidade_cnd (codigo_validacao, unidade_id, hash_parametros, " +
+                "canal_emissao, hash_documento_pdf) VALUES (?, 1, ?, 'TESTE', ?)",
+                "CNDTESTE" + i, "parametros-" + i, "pdf-" + i);
+        }
+    }
+    
+    // Sem o SKIP LOCKED a reserva de B esperaria o commit de A
+    @Test
+    @Timeout(30)
+    void nosConcorrentesReservamLinhasDisjuntas() throws Exception {
+        // O nó A reserva e ainda não fez commit: as linhas ficam travadas
+        try (Connection conexaoA = postgres.getPostgresDatabase().getConnection()) {
+            conexaoA.setAutoCommit(false);
+            List<Long> reservadasA = reservar(conexaoA, "no-a", 2);
+            
+            // O nó B pula as linhas travadas (SKIP LOCKED) em vez de esperar o commit de A
+            List<Long> reservadasB = reservar(jdbcTemplate, "no-b", 10);
+            conexaoA.commit();
+            
+            assertThat(reservadasA).hasSize(2);
+            assertThat(reservadasB).hasSize(4).doesNotContainAnyElementsOf(reservadasA);
+        }
+        
+        // Com as reservas gravadas, o lease de A impede uma nova reserva das mesmas linhas
+        assertThat(reservar(jdbcTemplate, "no-c", 10)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM unidade_cnd WHERE reservado_por = 'no-a'", Integer.class)).isEqualTo(2);
+    }
+    
+    @Test
+    void leaseVencidoVoltaParaAFila() {
+        List<Long> reservadasA = reservar(jdbcTemplate, "no-a", 10);
+        assertThat(reservadasA).hasSize(6);
+        
+        // A caiu no meio do lote: o lease vence e as linhas voltam a ficar disponíveis
+        vencerLease("no-a");
+        List<Long> reservadasB = reservar(jdbcTemplate, "no-b", 10);
+        
+        assertThat(reservadasB).containsExactlyInAnyOrderElementsOf(reservadasA);
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT DISTINCT tentativas_assinatura FROM unidade_cnd", Integer.class)).containsExactly(2);
+    }
+    
+    @Test
+    void gravacaoDeNoSemLeaseEDescartada() {
+        Long id = reservar(jdbcTemplate, "no-a", 1).get(0);
+        vencerLease("no-a");
+        assertThat(reservar(jdbcTemplate, "no-b", 1)).containsExactly(id);
+        
+        // A terminou a assinatura depois de perder o lease: a gravação não pode sobrescrever a de B
+        assertThat(atualizar(id, "no-a", "hash-a")).isZero();
+        assertThat(atualizar(id, "no-b", "hash-b")).isEqualTo(1);
+        
+        assertThat(jdbcTemplate.queryForMap(
+            "SELECT status, hash_documento_assinado, reservado_por FROM unidade_cnd WHERE id = ?", id))
+            .containsEntry("status", "ASSINADO")
+            .containsEntry("hash_documento_assinado", "hash-b")
+            .containsEntry("reservado_por", null);
+    }
+    
+    @Test
+    void esgotadasSoComLeaseVencido() {
+        jdbcTemplate.update("UPDATE unidade_cnd SET tentativas_assinatura = ?", MAX_TENTATIVAS);
+        jdbcTemplate.update("UPDATE unidade_cnd SET reservado_por = 'no-a', " +
+            "reservado_ate = now() + INTERVAL '5 minutes' WHERE codigo_validacao = 'CNDTESTE1'");
+        
+        // Sem tentativas restantes nada é reservado; só a linha com lease ativo continua em PROCESSANDO
+        assertThat(reservar(jdbcTemplate, "no-b", 10)).isEmpty();
+        assertThat(jdbcTemplate.update(CndAssinaturaService.SQL_ESGOTADAS, MAX_TENTATIVAS)).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT status FROM unidade_cnd WHERE codigo_validacao = 'CNDTESTE1'", String.class))
+            .isEqualTo("PROCESSANDO");
+    }
+    
+    private static List<Long> reservar(JdbcTemplate template, String no, int tamanhoLote) {
+        return template.query(CndAssinaturaService.SQL_RESERVAR, (rs, i) -> rs.getLong("id"),
+            no, LEASE_SEGUNDOS, MAX_TENTATIVAS, tamanhoLote);
+    }
+    
+    private static List<Long> reservar(Connection conexao, String no, int tamanhoLote) {
+        return reservar(new JdbcTemplate(new SingleConnectionDataSource(conexao, true)), no, tamanhoLote);
+    }
+    
+    private static void vencerLease(String no) {
+        jdbcTemplate.update("UPDATE unidade_cnd SET reservado_ate = now() - INTERVAL '1 second' " +
+            "WHERE reservado_por = ?", no);
+    }
+    
+    /** Mesmos parâmetros de {@code CndAssinaturaService.salvarResultados} para uma CND assinada. */
+    private static int atualizar(Long id, String no, String hashAssinado) {
+        Timestamp agora = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.update(CndAssinaturaService.SQL_ATUALIZAR, ps -> {
+            ps.setString(1, "ASSINADO");
+            ps.setString(2, hashAssinado);
+            ps.setObject(3, 1024L, Types.BIGINT);
+            ps.setTimestamp(4, agora);
+            ps.setString(5, "{}");
+            ps.setTimestamp(6, agora);
+            ps.setBoolean(7, false);
+            ps.setInt(8, RETRY_SEGUNDOS);
+            ps.setLong(9, id);
+            ps.setString(10, no);
+        });
+    }
+}
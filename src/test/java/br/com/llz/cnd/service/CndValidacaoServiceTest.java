@@ -0,0 +1,103 @@
+package br.com.llz.cnd.service;
+
+import br.com.llz.cnd.antifraude.LimitadorTentativasLocal;
+import br.com.llz.cnd.dto.CndValidacaoResponse;
+import br.com.llz.cnd.dto.UnidadeCndRequest;
+import br.com.llz.cnd.repository.CndValidacaoResumo;
+import br.com.llz.cnd.repository.UnidadeCndRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CndValidacaoServiceTest {
+    
+    /** Emissões recusadas pelo limite de IP não consomem as tentativas da unidade. */
+    @Test
+    void recusaPorIpNaoConsomeTentativaDaUnidade() {
+        CndValidacaoService service = new CndValidacaoService(mock(UnidadeCndRepository.class),
+            new LimitadorTentativasLocal(), mock(GeradorCodigoValidacao.class));
+        ReflectionTestUtils.setField(service, "maxTentativasHora", 2);
+        ReflectionTestUtils.setField(service, "maxTentativasIpHora", 1);
+        UnidadeCndRequest request = new UnidadeCndRequest();
+        
+        service.validarAntiFraude(1L, request, "10.0.0.1");
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> service.validarAntiFraude(1L, request, "10.0.0.1"))
+                .hasMessageContaining("deste endereço");
+        }
+        
+        // Resta uma tentativa para a unidade por outro endereço, e só uma
+        assertThatCode(() -> service.validarAntiFraude(1L, request, "10.0.0.2")).doesNotThrowAnyException();
+        assertThatThrownBy(() -> service.validarAntiFraude(1L, request, "10.0.0.3"))
+            .hasMessageStartingWith("Muitas tentativas. Tente");
+    }
+    
+    /** A resposta em cache não sobrevive ao vencimento da CND, mesmo com expiração configurada maior. */
+    @Test
+    void cacheDeValidacaoExpiraNoVencimentoDaCnd() {
+        UnidadeCndRepository repository = mock(UnidadeCndRepository.class);
+        CndValidacaoService service = novoService(repository);
+        String codigo = new GeradorCodigoValidacao(0).gerar();
+        when(repository.buscarValidacao(codigo))
+            .thenReturn(Optional.of(assinada(LocalDateTime.now().plusMinutes(2))));
+        
+        assertThat(service.validarPorCodigo(codigo).isValido()).isTrue();
+        assertThat(service.validarPorCodigo(codigo).isValido()).isTrue();
+        verify(repository, times(1)).buscarValidacao(codigo);
+        
+        Cache<String, CndValidacaoResponse> cache = cacheValidacao(service);
+        Duration restante = cache.policy().expireVariably().orElseThrow()
+            .getExpiresAfter(codigo).orElseThrow();
+        assertThat(restante).isPositive().isLessThanOrEqualTo(Duration.ofMinutes(2));
+    }
+    
+    /** Vencida, mas ainda não varrida pelo ciclo de vida: inválida e fora do cache. */
+    @Test
+    void cndVencidaAindaAssinadaNaoEValidaNemEntraNoCache() {
+        UnidadeCndRepository repository = mock(UnidadeCndRepository.class);
+        CndValidacaoService service = novoService(repository);
+        String codigo = new GeradorCodigoValidacao(0).gerar();
+        when(repository.buscarValidacao(codigo))
+            .thenReturn(Optional.of(assinada(LocalDateTime.now().minusSeconds(1))));
+        
+        assertThat(service.validarPorCodigo(codigo).isValido()).isFalse();
+        assertThat(service.validarPorCodigo(codigo).isValido()).isFalse();
+        verify(repository, times(2)).buscarValidacao(codigo);
+        assertThat(cacheValidacao(service).getIfPresent(codigo)).isNull();
+    }
+    
+    private static CndValidacaoService novoService(UnidadeCndRepository repository) {
+        CndValidacaoService service = new CndValidacaoService(repository,
+            new LimitadorTentativasLocal(), mock(GeradorCodigoValidacao.class));
+        ReflectionTestUtils.setField(service, "cacheTamanhoMaximo", 100L);
+        ReflectionTestUtils.setField(service, "cacheExpiracaoMinutos", 10L);
+        ReflectionTestUtils.setField(service, "cacheNegativoTamanhoMaximo", 100L);
+        ReflectionTestUtils.setField(service, "cacheNegativoExpiracaoSegundos", 60L);
+        service.inicializar();
+        return service;
+    }
+    
+    private static CndValidacaoResumo assinada(LocalDateTime dtExpiracao) {
+        LocalDateTime emissao = dtExpiracao.minusDays(30);
+        return new CndValidacaoResumo("ASSINADO", emissao, emissao, dtExpiracao,
+            "101", "A", "Condomínio Teste", "abc", Map.of());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Cache<String, CndValidacaoResponse> cacheValidacao(CndValidacaoService service) {
+        return (Cache<String, CndValidacaoResponse>) ReflectionTestUtils.getField(service, "cacheValidacao");
+    }
+}
@@ -0,0 +1,106 @@
+package br.com.llz.cnd.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeradorCodigoValidacaoTest {
+    
+    private static final int THREADS = 16;
+    private static final int NOS = 4;
+    private static final int POR_THREAD = 50_000;
+    
+    /** 16 threads divididas entre 4 nós (cnd.codigo.no distintos), todas começando juntas. */
+    @Test
+    void codigosUnicosEntreThreadsENos() throws Exception {
+        GeradorCodigoValidacao[] geradores = new GeradorCodigoValidacao[NOS];
+        for (int i = 0; i < NOS; i++) {
+            geradores[i] = new GeradorCodigoValidacao(i);
+        }
+        Set<String> codigos = ConcurrentHashMap.newKeySet(THREADS * POR_THREAD);
+        AtomicLong invalidos = new AtomicLong();
+        CountDownLatch largada = new CountDownLatch(1);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                GeradorCodigoValidacao gerador = geradores[t % NOS];
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < POR_THREAD; i++) {
+                        String codigo = gerador.gerar();
+                        if (!GeradorCodigoValidacao.formatoValido(codigo)) {
+                            invalidos.incrementAndGet();
+                        }
+                        codigos.add(codigo);
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertThat(invalidos).hasValue(0);
+        assertThat(codigos).hasSize(THREADS * POR_THREAD);
+    }
+    
+    @Test
+    void idsCrescentesQuandoASequenciaTransborda() {
+        // Bem mais que 4096 ids no mesmo milissegundo
+        GeradorCodigoValidacao gerador = new GeradorCodigoValidacao(7);
+        long anterior = gerador.proximoId();
+        for (int i = 0; i < 20_000; i++) {
+            long id = gerador.proximoId();
+            assertThat(id).isGreaterThan(anterior);
+            anterior = id;
+        }
+    }
+    
+    @Test
+    void verificadorRecusaQualquerSimboloTrocado() {
+        String codigo = new GeradorCodigoValidacao(1).gerar();
+        assertThat(codigo).hasSize(GeradorCodigoValidacao.TAMANHO);
+        assertThat(GeradorCodigoValidacao.formatoValido(codigo)).isTrue();
+        
+        String alfabeto = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+        for (int i = GeradorCodigoValidacao.PREFIXO.length(); i < codigo.length(); i++) {
+            for (char simbolo : alfabeto.toCharArray()) {
+                if (simbolo != codigo.charAt(i)) {
+                    String digitado = codigo.substring(0, i) + simbolo + codigo.substring(i + 1);
+                    assertThat(GeradorCodigoValidacao.formatoValido(digitado)).as(digitado).isFalse();
+                }
+            }
+        }
+    }
+    
+    @Test
+    void formatoAnteriorAceitoSemVerificacao() {
+        assertThat(GeradorCodigoValidacao.formatoValido("CND240115123")).isTrue();
+        assertThat(GeradorCodigoValidacao.formatoValido("CND24011512A")).isFalse();
+        assertThat(GeradorCodigoValidacao.formatoValido("XYZ240115123")).isFalse();
+        assertThat(GeradorCodigoValidacao.formatoValido(null)).isFalse();
+    }
+    
+    @Test
+    void noForaDaFaixaRecusado() {
+        assertThatThrownBy(() -> new GeradorCodigoValidacao(GeradorCodigoValidacao.MAX_NO + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,84 @@
+package br.com.llz.cnd.service;
+
+import br.com.llz.cnd.adimplencia.AdimplenciaService;
+import br.com.llz.cnd.dto.UnidadeCndRequest;
+import br.com.llz.cnd.metricas.MetricasCnd;
+import br.com.llz.cnd.storage.DocumentoStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnidadeServiceTest {
+    
+    /** O líder da emissão falha com um Error: quem aguarda a mesma emissão recebe a falha em vez de travar. */
+    @Test
+    @Timeout(30)
+    void pedidoIdenticoNaoTravaQuandoAEmissaoFalhaComError() throws Exception {
+        DadosUnidadeService dadosUnidadeService = mock(DadosUnidadeService.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        
+        CountDownLatch emAndamento = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(dadosUnidadeService.buscar(anyLong())).thenAnswer(invocacao -> {
+            emAndamento.countDown();
+            liberar.await();
+            throw new StackOverflowError("renderização");
+        });
+        
+        UnidadeService service = new UnidadeService(mock(AdimplenciaService.class), dadosUnidadeService,
+            mock(JdbcTemplate.class), mock(CndPdfService.class), mock(CndValidacaoService.class),
+            mock(DocumentoStore.class), mock(MetricasCnd.class), transactionManager);
+        UnidadeCndRequest request = new UnidadeCndRequest();
+        
+        AtomicReference<Throwable> falhaLider = new AtomicReference<>();
+        Thread lider = new Thread(() -> {
+            try {
+                service.emitirCndPdf(1L, request, "127.0.0.1");
+            } catch (Throwable e) {
+                falhaLider.set(e);
+            }
+        });
+        lider.setDaemon(true);
+        lider.start();
+        emAndamento.await();
+        
+        CompletableFuture<Object> aguardando = new CompletableFuture<>();
+        Thread pedidoIdentico = new Thread(() -> {
+            try {
+                aguardando.complete(service.emitirCndPdf(1L, request, "127.0.0.1"));
+            } catch (Throwable e) {
+                aguardando.completeExceptionally(e);
+            }
+        });
+        pedidoIdentico.setDaemon(true);
+        pedidoIdentico.start();
+        // Só libera o líder com o segundo pedido já esperando pela mesma emissão
+        while (pedidoIdentico.getState() != Thread.State.WAITING && !aguardando.isDone()) {
+            Thread.onSpinWait();
+        }
+        liberar.countDown();
+        lider.join();
+        
+        assertThat(falhaLider.get()).isInstanceOf(StackOverflowError.class);
+        assertThatThrownBy(aguardando::get).isInstanceOf(ExecutionException.class)
+            .rootCause().isInstanceOf(StackOverflowError.class);
+        verify(dadosUnidadeService, times(1)).buscar(anyLong());
+    }
+}